@@ -9,15 +9,16 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -34,7 +35,7 @@ import net.tiny.config.ContextHandler;
  * Help: java net.tiny.boot.Main --help
  * <code>
  *      -p --profile The profile name.
- *      -f --file    Configuration file.
+ *      -f --file    Configuration file, or the comma separated files of a chain.
  *                   Default: 'application-{profile}.yml(Support YAML, JSON, HSON and Properties)'
  *      -i --pid     Process id file (/var/run/pid).
  *      -v --verbose On debug mode.
@@ -44,6 +45,8 @@ import net.tiny.config.ContextHandler;
  * <br/>
  * <p>
  * Configuration file : application-{profile}.[yml, json, conf, properties]
+ * The found files of the chain 'application', 'application-{profile}' and
+ * 'application-{host}' are merged, a later file overrides the former ones.
  * <code>
  * main = ${server}
  * shutdown = ${hook}
@@ -67,6 +70,7 @@ public class Main {
     private static final String CONFIG_EXECUTOR          = "executor";
     private static final String CONFIG_CONSUMER_CALLBACK = "callback";
     private static final String ENV_PROFILE = "profile";
+    private static final String ENV_HOST = "HOSTNAME";
     private static final String MAIN_METHOD = "main";
     private static final String LOGGER_PROPERTIES = "logging.properties";
 
@@ -93,6 +97,7 @@ public class Main {
     private String profile;
     private String[] arguments;
     private String configFile;
+    private List<String> configFiles;
     private String pidFile;
     private Configuration configuration;
     private ExecutorService executor;
@@ -185,22 +190,26 @@ public class Main {
             this.pidFile = System.getProperty("pidfile");
         }
 
-        //If not on CL arguments find configuration file on current path with profile
-        this.configFile = matcheConfigFile(this.configFile);
+        //If not on CL arguments find configuration files on current path with profile
+        this.configFiles = matcheConfigFiles(this.configFile);
 
-        if(null == this.configFile) {
+        if(this.configFiles.isEmpty()) {
             System.err.println("Not found configuration file.");
             return false;
         }
+        this.configFile = String.join(",", this.configFiles);
 
         this.collector = new ServiceCollector();
 
         try {
             ConfigurationHandler handler = new ConfigurationHandler();
             handler.setListener(collector);
-            handler.setResource(this.configFile);
+            handler.setResources(this.configFiles);
             handler.parse();
             this.configuration = handler.getConfiguration();
+            // Create the boot beans and their dependencies concurrently
+            this.configuration.instantiate(ForkJoinPool.commonPool(),
+                    CONFIG_MAIN, CONFIG_SHUTDOWN, CONFIG_EXECUTOR, CONFIG_CONSUMER_CALLBACK);
             List<Object> list = this.configuration.getAs(CONFIG_MAIN, List.class);
             for(Object boot : list) {
                 if(isBootstrap(boot)) {
@@ -252,7 +261,7 @@ public class Main {
         System.out.println("Usage:");
         System.out.println("java " + getClass().getName());
         System.out.println("     -p --profile The profile name.");
-        System.out.println("     -f --file    Config file.");
+        System.out.println("     -f --file    Config file, or the comma separated files of a chain.");
         System.out.println("                  Default: 'config-profile.yml(or conf, json, properties)'");
         System.out.println("     -i --pid     Process id file (/var/run/pid).");
         System.out.println("     -v --verbose On debug mode.");
@@ -316,10 +325,18 @@ public class Main {
 
     public ApplicationContext run() {
         bootCache = Collections.unmodifiableMap(bootCache);
-        Set<String> unimps = this.configuration.remains();
-        if (!unimps.isEmpty()) {
-            LOGGER.warning(String.format("[BOOT] Found %d parameter(s) '%s' that have not been referenced.", unimps.size(), unimps.toString()));
+        // The beans not referenced yet, found by a scan of the read marks before they are created
+        Set<String> unrefs = new TreeSet<>();
+        for (String key : this.configuration.findUnreferenced()) {
+            if (key.endsWith(".class")) {
+                unrefs.add(key.substring(0, key.length() - 6));
+            }
+        }
+        if (!unrefs.isEmpty()) {
+            LOGGER.warning(String.format("[BOOT] Found %d parameter(s) '%s' that have not been referenced.", unrefs.size(), unrefs.toString()));
         }
+        // The remaining beans are created and registered as the services of the callback
+        this.configuration.remains();
         // Run service consumer callback to register all singleton services in container.
         // See 'callback.class = x.y.ServiceContext'
         if (consumer != null) {
@@ -382,33 +399,82 @@ public class Main {
         return String.format("%s@%d-%s", getClass().getName(), getProcessId(), getProfile());
     }
 
-    private String matcheConfigFile(String config) {
-        final StringBuilder regex;
+    /**
+     * Find the chain of the configuration files, the base, the profile and the host
+     * files. The given comma separated files are the chain as is.
+     *
+     * @return The found files from the lowest to the highest precedence
+     */
+    private List<String> matcheConfigFiles(String config) {
+        final List<String> files = new ArrayList<>();
+        if(null != config && config.indexOf(',') >= 0) {
+            for(String name : config.split(",")) {
+                File file = new File(name.trim());
+                if(!file.isFile()) {
+                    LOGGER.warning(String.format("Not found configuration file '%1$s'", file.getAbsolutePath()));
+                    return Collections.emptyList();
+                }
+                files.add(file.getAbsolutePath());
+            }
+            return files;
+        }
         final File path;
+        final String name;
         if(null == config) {
             path = new File(System.getProperty("user.dir"));
-            regex = new StringBuilder(BOOT_CONFIG_FILENAME);
+            name = BOOT_CONFIG_FILENAME;
         } else {
             File file = new File(config);
-            path = file.getParentFile();
-            regex = new StringBuilder(file.getName());
+            path = file.getAbsoluteFile().getParentFile();
+            name = file.getName();
+        }
+        // The base and the host files are optional
+        String file = matcheConfigFile(path, name);
+        if(null != file) {
+            files.add(file);
         }
         if(this.profile != null) {
-            regex.append("-").append(this.profile);
+            file = matcheConfigFile(path, name + "-" + this.profile);
+            if(null == file) {
+                if(verbose)
+                    LOGGER.warning(String.format("Can not matched '%1$s-%2$s' file on '%3$s'", name, this.profile, path.getAbsolutePath()));
+                return Collections.emptyList();
+            }
+            files.add(file);
         }
+        final String host = getHostName();
+        if(null != host) {
+            file = matcheConfigFile(path, name + "-" + host);
+            if(null != file && !files.contains(file)) {
+                files.add(file);
+            }
+        }
+        if(files.isEmpty() && verbose) {
+            LOGGER.warning(String.format("Can not matched '%1$s' file on '%2$s'", name, path.getAbsolutePath()));
+        }
+        return files;
+    }
+
+    private static String getHostName() {
+        String host = System.getenv(ENV_HOST);
+        if(null == host || host.isEmpty()) {
+            host = System.getProperty("hostname");
+        }
+        return (null == host || host.isEmpty()) ? null : host;
+    }
+
+    private String matcheConfigFile(File path, String name) {
         //Default: 'config-profile.yml(conf, json, properties)'
-        regex.append("[.](yml|properties|json|conf)");
+        final String regex = Pattern.quote(name) + "[.](yml|properties|json|conf)";
 
         FileFilter filter = new FileFilter() {
             @Override
             public boolean accept(File file) {
-                return (file.isFile() && Pattern.matches(regex.toString(), file.getName()));
+                return (file.isFile() && Pattern.matches(regex, file.getName()));
             }
         };
         File[] files = path.listFiles(filter);
         if(null == files || files.length == 0) {
-            if(verbose)
-                LOGGER.warning(String.format("Can not matched '%1$s' file on '%2$s'", regex.toString(), path.getAbsolutePath()));
             return null;
         }
         try {
@@ -535,7 +601,7 @@ public class Main {
     }
 
     class ServiceCollector implements ContextHandler.Listener {
-        Map<String, Object> collection = new HashMap<>();
+        Map<String, Object> collection = new ConcurrentHashMap<>();
         @Override
         public void created(Object bean, Class<?> beanClass) {
             LOGGER.fine(String.format("[BOOT] '%s'#%d was created.", beanClass.getSimpleName(), bean.hashCode()));
@@ -0,0 +1,126 @@
+package net.tiny.config;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read marks of the string keys.
+ *
+ * <p>
+ * Each key gets a slot when it is added, a read sets the bit of its slot.
+ * The keys never read are found by a linear scan of the bits, nothing is
+ * resolved nor instantiated.
+ * The bits are kept in fixed pages, so a mark is never lost by a growing set.
+ * <p>
+ */
+final class AccessBits {
+
+    private static final int PAGE_BITS = 1 << 16;
+    private static final int PAGE_WORDS = PAGE_BITS >>> 6;
+
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[0];
+    /** The key of a slot, null if removed. Guarded by this */
+    private String[] names = new String[64];
+    private int next = 0;
+
+    AccessBits() {
+    }
+
+    AccessBits(Iterable<String> keys) {
+        for (String key : keys) {
+            add(key);
+        }
+    }
+
+    synchronized void add(String key) {
+        if (slots.containsKey(key)) {
+            return;
+        }
+        final int slot = next++;
+        if (slot == names.length) {
+            names = Arrays.copyOf(names, slot * 2);
+        }
+        if ((slot / PAGE_BITS) == pages.length) {
+            AtomicLongArray[] grown = Arrays.copyOf(pages, pages.length + 1);
+            grown[pages.length] = new AtomicLongArray(PAGE_WORDS);
+            pages = grown;
+        }
+        names[slot] = key;
+        slots.put(key, slot);
+    }
+
+    synchronized void remove(String key) {
+        Integer slot = slots.remove(key);
+        if (null != slot) {
+            names[slot] = null;
+        }
+    }
+
+    /**
+     * Mark the key as read.
+     */
+    void mark(String key) {
+        final Integer slot = slots.get(key);
+        if (null == slot) {
+            return;
+        }
+        final AtomicLongArray[] current = pages;
+        if (slot / PAGE_BITS >= current.length) {
+            // Cleared
+            return;
+        }
+        final AtomicLongArray page = current[slot / PAGE_BITS];
+        final int word = (slot % PAGE_BITS) >>> 6;
+        final long bit = 1L << slot;
+        long bits;
+        // Read before write, a marked key costs no store
+        while (((bits = page.get(word)) & bit) == 0L) {
+            if (page.compareAndSet(word, bits, bits | bit)) {
+                return;
+            }
+        }
+    }
+
+    boolean isMarked(String key) {
+        final Integer slot = slots.get(key);
+        if (null == slot) {
+            return false;
+        }
+        final AtomicLongArray[] current = pages;
+        return slot / PAGE_BITS < current.length
+                && (current[slot / PAGE_BITS].get((slot % PAGE_BITS) >>> 6) & (1L << slot)) != 0L;
+    }
+
+    /**
+     * @return The keys never marked
+     */
+    synchronized Set<String> unmarked() {
+        final Set<String> keys = new TreeSet<>();
+        for (int base = 0; base < next; base += 64) {
+            long free = ~pages[base / PAGE_BITS].get((base % PAGE_BITS) >>> 6);
+            while (free != 0L) {
+                final int slot = base + Long.numberOfTrailingZeros(free);
+                if (slot >= next) {
+                    break;
+                }
+                if (null != names[slot]) {
+                    keys.add(names[slot]);
+                }
+                free &= free - 1L;
+            }
+        }
+        return keys;
+    }
+
+    synchronized void clear() {
+        slots.clear();
+        pages = new AtomicLongArray[0];
+        names = new String[64];
+        next = 0;
+    }
+}
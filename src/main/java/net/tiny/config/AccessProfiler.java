@@ -0,0 +1,284 @@
+package net.tiny.config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Access profiler of a configuration.
+ *
+ * <p>
+ * Counts the reads, the cache hits and misses, and the nanoseconds of the
+ * <code>${...}</code> resolution and of the conversion per key. The counters are
+ * striped {@link LongAdder}s, so the profiled reads do not contend each other.
+ * The keys never read show the dead configuration, the most read keys
+ * which are resolved on every read are candidates to be cached.
+ * <p>
+ * <code>
+ * AccessProfiler profiler = config.profile();
+ * ...
+ * System.out.println(profiler.dump());
+ * </code>
+ * The profiler is registered as the MBean
+ * <code>net.tiny.config:type=AccessProfiler,name=Configuration#n</code>, where n is
+ * a sequence in the JVM. The MBean stays registered until
+ * {@link Configuration#destroy()} is called, which must be called when the profiled
+ * configuration is dropped. The configuration is only weakly held by the profiler,
+ * so a configuration not destroyed is still collected, the leaked MBean then has no keys.
+ */
+public final class AccessProfiler implements AccessProfilerMBean {
+
+    private static Logger LOGGER = Logger.getLogger(AccessProfiler.class.getName());
+
+    static final int HOT_KEYS = 20;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * The counters of a key.
+     */
+    public static final class Stats {
+        final LongAdder reads = new LongAdder();
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder resolveNanos = new LongAdder();
+        final LongAdder convertNanos = new LongAdder();
+
+        public long getReads() {
+            return reads.sum();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getResolveNanos() {
+            return resolveNanos.sum();
+        }
+
+        public long getConvertNanos() {
+            return convertNanos.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("reads:%d hits:%d misses:%d resolve:%dns convert:%dns",
+                    getReads(), getHits(), getMisses(), getResolveNanos(), getConvertNanos());
+        }
+    }
+
+    private final WeakReference<Configuration> configuration;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private volatile long since = System.currentTimeMillis();
+    private ObjectName name;
+
+    AccessProfiler(Configuration configuration) {
+        this.configuration = new WeakReference<>(configuration);
+    }
+
+    private Stats stats(String key) {
+        Stats counters = stats.get(key);
+        if (null == counters) {
+            counters = stats.computeIfAbsent(key, k -> new Stats());
+        }
+        return counters;
+    }
+
+    /**
+     * @param key The key of the root configuration
+     * @param hit true if the value is served from the cache
+     */
+    void read(String key, boolean hit) {
+        Stats counters = stats(key);
+        counters.reads.increment();
+        if (hit) {
+            counters.hits.increment();
+        }
+    }
+
+    /**
+     * A read resolving the <code>${...}</code> references, a cache miss.
+     */
+    void resolved(String key, long nanos) {
+        Stats counters = stats(key);
+        counters.reads.increment();
+        counters.misses.increment();
+        counters.resolveNanos.add(nanos);
+    }
+
+    void converted(String key, long nanos) {
+        stats(key).convertNanos.add(nanos);
+    }
+
+    /**
+     * @return The counters of the key, null if never read
+     */
+    public Stats getStats(String key) {
+        return stats.get(key);
+    }
+
+    /**
+     * @param limit The max count of the keys
+     * @return The keys ordered by the read count
+     */
+    public List<String> hotKeys(int limit) {
+        List<Map.Entry<String, Stats>> entries = new ArrayList<>(stats.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Stats> e) -> e.getValue().getReads()).reversed());
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : entries) {
+            if (keys.size() >= limit || entry.getValue().getReads() == 0L) {
+                break;
+            }
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * @return The keys never read since the profiler was enabled or reset
+     */
+    public Set<String> unreadKeys() {
+        Set<String> keys = new TreeSet<>();
+        final Configuration config = configuration.get();
+        if (null == config) {
+            // Collected without destroy
+            return keys;
+        }
+        for (String key : config.getAllPropertyNames()) {
+            Stats counters = stats.get(key);
+            if (null == counters || counters.getReads() == 0L) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public long getReads() {
+        return stats.values().stream().mapToLong(Stats::getReads).sum();
+    }
+
+    @Override
+    public long getHits() {
+        return stats.values().stream().mapToLong(Stats::getHits).sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return stats.values().stream().mapToLong(Stats::getMisses).sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return (total == 0L) ? 0d : (double) hits / total;
+    }
+
+    @Override
+    public long getResolveNanos() {
+        return stats.values().stream().mapToLong(Stats::getResolveNanos).sum();
+    }
+
+    @Override
+    public long getConvertNanos() {
+        return stats.values().stream().mapToLong(Stats::getConvertNanos).sum();
+    }
+
+    @Override
+    public String[] getHotKeys() {
+        List<String> lines = new ArrayList<>();
+        for (String key : hotKeys(HOT_KEYS)) {
+            lines.add(key + " " + stats.get(key));
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public String[] getUnreadKeys() {
+        Set<String> keys = unreadKeys();
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(String.format("[CONFIG] Profiled %ds: reads:%d hit ratio:%.2f resolve:%dns convert:%dns%n",
+                (System.currentTimeMillis() - since) / 1000L, getReads(), getHitRatio(),
+                getResolveNanos(), getConvertNanos()));
+        buffer.append(String.format("Hot keys:%n"));
+        for (String line : getHotKeys()) {
+            buffer.append(String.format("#\t%s%n", line));
+        }
+        Set<String> unread = unreadKeys();
+        buffer.append(String.format("Unread keys(%d):%n", unread.size()));
+        for (String key : unread) {
+            buffer.append(String.format("#\t%s%n", key));
+        }
+        return buffer.toString();
+    }
+
+    @Override
+    public void reset() {
+        stats.clear();
+        since = System.currentTimeMillis();
+    }
+
+    synchronized void register() {
+        if (null != name) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(String.format(
+                    "net.tiny.config:type=AccessProfiler,name=Configuration#%d", SEQUENCE.incrementAndGet()));
+            server.registerMBean(this, objectName);
+            // Only a registered name is unregistered
+            name = objectName;
+        } catch (JMException ex) {
+            LOGGER.warning(String.format("Can not register the profiler MBean. %s", ex.getMessage()));
+        }
+    }
+
+    synchronized void unregister() {
+        if (null == name) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ex) {
+            // Already unregistered
+        }
+        name = null;
+    }
+
+    /**
+     * @return The MBean name, null if not registered
+     */
+    public ObjectName getObjectName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%d keys) reads:%d hit ratio:%.2f",
+                getClass().getSimpleName(), stats.size(), getReads(), getHitRatio());
+    }
+}
@@ -0,0 +1,33 @@
+package net.tiny.config;
+
+/**
+ * JMX view of an {@link AccessProfiler}.
+ */
+public interface AccessProfilerMBean {
+
+    long getReads();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getResolveNanos();
+
+    long getConvertNanos();
+
+    /**
+     * @return The most read keys with their counters
+     */
+    String[] getHotKeys();
+
+    /**
+     * @return The keys never read since the profiler was enabled
+     */
+    String[] getUnreadKeys();
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,176 @@
+package net.tiny.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Dependency graph of the beans to be created.
+ *
+ * <p>
+ * Each bean is created as soon as all the beans it refers to have been created,
+ * so independent beans are created concurrently on the executor.
+ * After execution, the creation time of each bean gives the critical path,
+ * the chain of dependencies that bounds the total time.
+ * <p>
+ */
+final class BeanGraph {
+
+    private final Map<String, Set<String>> dependencies;
+    private final Map<String, Long> costs = new ConcurrentHashMap<>();
+
+    /**
+     * @param dependencies The bean keys referred by each bean key.
+     *        The keys which are not in the graph are ignored.
+     */
+    BeanGraph(Map<String, Set<String>> dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    int size() {
+        return dependencies.size();
+    }
+
+    /**
+     * Create all beans in dependency order.
+     *
+     * @param factory The bean factory by key, may return null
+     * @param executor The executor running the factory
+     * @return The created beans by key
+     */
+    Map<String, Object> execute(Function<String, Object> factory, Executor executor) {
+        List<String> cycle = Template.findCycle(dependencies);
+        if (!cycle.isEmpty()) {
+            throw new RuntimeException(
+                    String.format("Can not cycle reference beans '%s'.", String.join(" -> ", cycle)));
+        }
+        final Map<String, Object> beans = new ConcurrentHashMap<>();
+        final Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+        for (String key : order()) {
+            List<CompletableFuture<Void>> waits = new ArrayList<>();
+            for (String dependency : dependencies.get(key)) {
+                CompletableFuture<Void> future = futures.get(dependency);
+                if (null != future) {
+                    waits.add(future);
+                }
+            }
+            futures.put(key, CompletableFuture.allOf(waits.toArray(new CompletableFuture<?>[waits.size()]))
+                    .thenRunAsync(() -> {
+                        long start = System.nanoTime();
+                        Object bean = factory.apply(key);
+                        costs.put(key, System.nanoTime() - start);
+                        if (null != bean) {
+                            beans.put(key, bean);
+                        }
+                    }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()])).join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+        return beans;
+    }
+
+    /**
+     * @return The keys in topological order, dependencies first
+     */
+    private List<String> order() {
+        Map<String, Integer> degrees = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            int degree = 0;
+            for (String dependency : entry.getValue()) {
+                if (dependencies.containsKey(dependency)) {
+                    dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(entry.getKey());
+                    degree++;
+                }
+            }
+            degrees.put(entry.getKey(), degree);
+        }
+        Deque<String> ready = new ArrayDeque<>();
+        for (Map.Entry<String, Integer> entry : degrees.entrySet()) {
+            if (entry.getValue() == 0) {
+                ready.add(entry.getKey());
+            }
+        }
+        List<String> order = new ArrayList<>(dependencies.size());
+        while (!ready.isEmpty()) {
+            String key = ready.poll();
+            order.add(key);
+            for (String dependent : dependents.getOrDefault(key, Collections.emptyList())) {
+                if (degrees.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @param key The bean key
+     * @return The creation time in nanoseconds, 0 if not created
+     */
+    long cost(String key) {
+        return costs.getOrDefault(key, 0L);
+    }
+
+    /**
+     * @return The most expensive chain of dependencies of the last execution,
+     *         the first bean has been created first.
+     */
+    List<String> criticalPath() {
+        Map<String, Long> finishes = new HashMap<>();
+        Map<String, String> previous = new HashMap<>();
+        String last = null;
+        for (String key : order()) {
+            long start = 0L;
+            for (String dependency : dependencies.get(key)) {
+                Long finish = finishes.get(dependency);
+                if (null != finish && finish > start) {
+                    start = finish;
+                    previous.put(key, dependency);
+                }
+            }
+            long finish = start + cost(key);
+            finishes.put(key, finish);
+            if (null == last || finish > finishes.get(last)) {
+                last = key;
+            }
+        }
+        List<String> path = new ArrayList<>();
+        for (String key = last; null != key; key = previous.get(key)) {
+            path.add(0, key);
+        }
+        return path;
+    }
+
+    /**
+     * @return The critical path like <code>'pool(120ms) -> dao(3ms)'</code>
+     */
+    String report() {
+        Map<String, String> names = new LinkedHashMap<>();
+        long total = 0L;
+        for (String key : criticalPath()) {
+            long cost = cost(key);
+            total += cost;
+            names.put(key, String.format("%s(%dms)", key, cost / 1000000L));
+        }
+        return String.format("%s %dms", String.join(" -> ", names.values()), total / 1000000L);
+    }
+}
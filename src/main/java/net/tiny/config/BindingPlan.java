@@ -0,0 +1,177 @@
+package net.tiny.config;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Binding plan of a bean class.
+ *
+ * <p>
+ * The fields and setters to be injected, their converters and the accessors
+ * are resolved once per class and kept in a {@link ClassValue}, so binding
+ * many beans of one class only costs the assignments.
+ * <p>
+ */
+final class BindingPlan {
+
+    /** Static method exclude filter */
+    private static final Predicate<Method> IS_NOT_STATIC_METHOD = (method) -> !Modifier.isStatic(method.getModifiers());
+
+    /** Public method include filter */
+    private static final Predicate<Method> IS_PUBLIC_METHOD     = (method) -> Modifier.isPublic(method.getModifiers());
+
+    /** Setter method include filter */
+    private static final Predicate<Method> IS_SETTER_METHOD     = (method) -> method.getName().startsWith("set")
+            && method.getParameterCount() == 1;
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final ClassValue<BindingPlan> PLANS = new ClassValue<BindingPlan>() {
+        @Override
+        protected BindingPlan computeValue(Class<?> type) {
+            return new BindingPlan(type);
+        }
+    };
+
+    static BindingPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /**
+     * A field or a setter method without field.
+     */
+    static final class Binding {
+        final String name;
+        final Class<?> type;
+        final Field field;
+        private final Converter.StringValueConverter<?> converter;
+        private final MethodHandle setter;
+        private final RuntimeException error;
+
+        private Binding(String name, Class<?> type, Field field, MethodHandle setter, RuntimeException error) {
+            this.name = name;
+            this.type = type;
+            this.field = field;
+            this.setter = (null == setter) ? null : setter.asType(SETTER_TYPE);
+            this.error = error;
+            this.converter = resolve(type);
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static Converter.StringValueConverter<?> resolve(Class<?> type) {
+            if (type.isEnum()) {
+                return value -> Enum.valueOf((Class<? extends Enum>)type, value);
+            }
+            return Converter.converters.get(type);
+        }
+
+        Object convert(String value, Converter defaultConverter) {
+            if (null != converter) {
+                return converter.convert(value);
+            }
+            return defaultConverter.convert(value, type);
+        }
+
+        void set(Object bean, Object value) {
+            if (null != error) {
+                // Not accessible field, e.g. a field of the JDK super class
+                throw error;
+            }
+            try {
+                setter.invokeExact(bean, value);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new RuntimeException(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    final Class<?> type;
+    /** The instance fields in declared order, subclass first */
+    final Binding[] fields;
+    /** The public setter methods without field */
+    final Binding[] properties;
+    private final MethodHandle constructor;
+    private final Exception error;
+
+    private BindingPlan(Class<?> type) {
+        this.type = type;
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Binding> list = new ArrayList<>();
+        Reflections.getFieldStream(type).forEach(field -> {
+            MethodHandle setter = null;
+            RuntimeException error = null;
+            try {
+                field.setAccessible(true);
+                setter = lookup.unreflectSetter(field);
+            } catch (IllegalAccessException ex) {
+                error = new RuntimeException(ex.getMessage(), ex);
+            } catch (RuntimeException ex) {
+                error = ex;
+            }
+            list.add(new Binding(field.getName(), field.getType(), field, setter, error));
+        });
+        this.fields = list.toArray(new Binding[list.size()]);
+
+        list.clear();
+        Set<String> signatures = new HashSet<>();
+        Reflections.getSetterStream(type, IS_NOT_STATIC_METHOD.and(IS_PUBLIC_METHOD).and(IS_SETTER_METHOD))
+            .filter(method -> signatures.add(method.getName() + method.getParameterTypes()[0].getName()))
+            .forEach(method -> {
+                char c = Character.toLowerCase(method.getName().charAt(3));
+                String name = new StringBuilder().append(c).append(method.getName().substring(4)).toString();
+                MethodHandle setter = null;
+                RuntimeException error = null;
+                try {
+                    setter = lookup.unreflect(method);
+                } catch (IllegalAccessException ex) {
+                    error = new RuntimeException(ex.getMessage(), ex);
+                }
+                list.add(new Binding(name, method.getParameterTypes()[0], null, setter, error));
+            });
+        this.properties = list.toArray(new Binding[list.size()]);
+
+        MethodHandle handle = null;
+        Exception cause = null;
+        try {
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                throw new InstantiationException(type.getName());
+            }
+            handle = lookup.unreflectConstructor(type.getDeclaredConstructor()).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException ex) {
+            cause = new InstantiationException(type.getName());
+            cause.initCause(ex);
+        } catch (InstantiationException | IllegalAccessException ex) {
+            cause = ex;
+        }
+        this.constructor = handle;
+        this.error = cause;
+    }
+
+    /**
+     * @return A new instance by the default constructor
+     */
+    Object newInstance() {
+        if (null != error) {
+            throw new RuntimeException(error.getMessage(), error);
+        }
+        try {
+            return constructor.invokeExact();
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+}
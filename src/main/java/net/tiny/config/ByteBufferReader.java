@@ -0,0 +1,115 @@
+package net.tiny.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of the characters of a local file held in a byte buffer.
+ *
+ * <p>
+ * The bytes are decoded straight into the array of the caller, a run of ASCII
+ * bytes is copied without the decoder. A large file is memory mapped, a small one
+ * is read at once, as mapping costs more than reading a few pages.
+ * The malformed bytes are replaced as an <code>InputStreamReader</code> does.
+ * <p>
+ */
+final class ByteBufferReader extends Reader {
+
+    /** The size of the files to be mapped */
+    static final long MAP_THRESHOLD = 1L << 20;
+
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    /** A low surrogate not fitting in the previous read, or -1 */
+    private int pending = -1;
+
+    ByteBufferReader(ByteBuffer bytes, Charset charset) {
+        this.bytes = bytes;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    static ByteBufferReader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final ByteBuffer buffer = (size >= MAP_THRESHOLD)
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0L, size)
+                    : ByteBuffer.wrap(Files.readAllBytes(file));
+            return new ByteBufferReader(buffer, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int count = 0;
+        if (pending >= 0) {
+            chars[offset] = (char) pending;
+            pending = -1;
+            count = 1;
+        }
+        while (count < length && bytes.hasRemaining()) {
+            // ASCII
+            int position = bytes.position();
+            final int end = Math.min(bytes.limit(), position + length - count);
+            if (bytes.hasArray()) {
+                final byte[] array = bytes.array();
+                final int base = bytes.arrayOffset();
+                byte b;
+                while (position < end && (b = array[base + position]) >= 0) {
+                    chars[offset + count++] = (char) b;
+                    position++;
+                }
+            } else {
+                byte b;
+                while (position < end && (b = bytes.get(position)) >= 0) {
+                    chars[offset + count++] = (char) b;
+                    position++;
+                }
+            }
+            bytes.position(position);
+            if (count == length || !bytes.hasRemaining()) {
+                break;
+            }
+            // Decode the bytes from the first non ASCII one
+            final CharBuffer out = CharBuffer.wrap(chars, offset + count, length - count);
+            final CoderResult result = decoder.decode(bytes, out, true);
+            final int decoded = out.position() - (offset + count);
+            count += decoded;
+            if (result.isOverflow() && decoded == 0) {
+                // A surrogate pair with a single char left
+                final CharBuffer pair = CharBuffer.allocate(2);
+                decoder.decode(bytes, pair, true);
+                chars[offset + count++] = pair.get(0);
+                if (pair.position() > 1) {
+                    pending = pair.get(1);
+                }
+                break;
+            }
+            if (result.isOverflow()) {
+                break;
+            }
+        }
+        return (count == 0) ? -1 : count;
+    }
+
+    @Override
+    public void close() {
+        bytes.position(bytes.limit());
+        pending = -1;
+    }
+}
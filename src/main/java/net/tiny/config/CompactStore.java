@@ -0,0 +1,332 @@
+package net.tiny.config;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A compact store of many long dotted keys.
+ *
+ * <p>
+ * The key segments are interned in a {@link SegmentTable} shared with the
+ * {@link KeyIndex}, a key is kept as the array of its segment ids,
+ * e.g. <code>'vcap.services.ups-admin.credentials.url'</code> as <code>[0, 1, 2, 3, 4]</code>.
+ * The equal string values are stored once.
+ * The keys, also a reused buffer, are looked up without creating sub strings, the full key strings
+ * are only built by {@link #stringPropertyNames()}.
+ * <p>
+ * All operations are serialized on the store, the same as {@link java.util.Hashtable}.
+ */
+final class CompactStore implements Store {
+
+    private static final long serialVersionUID = 1L;
+
+    /** A deduplicated value and the count of its keys */
+    private static final class Shared implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String value;
+        int count;
+
+        Shared(String value) {
+            this.value = value;
+        }
+    }
+
+    private final SegmentTable segments;
+    private final Map<String, Shared> values = new HashMap<>();
+    /** Open addressing table by linear probing */
+    private int[][] keys = new int[16][];
+    private int[] hashes = new int[16];
+    private Object[] objects = new Object[16];
+    private int size = 0;
+    /** The segment ids of the key in process */
+    private transient int[] ids;
+    private transient int length;
+
+    CompactStore(SegmentTable segments) {
+        this.segments = segments;
+    }
+
+    @Override
+    public synchronized Object get(String key) {
+        final int i = slot(key, false);
+        return (i < 0) ? null : objects[i];
+    }
+
+    @Override
+    public synchronized Object find(CharSequence key) {
+        final int i = slot(key, false);
+        return (i < 0) ? null : objects[i];
+    }
+
+    @Override
+    public String getProperty(String key) {
+        final Object value = get(key);
+        return (value instanceof String) ? (String) value : null;
+    }
+
+    @Override
+    public synchronized boolean containsKey(String key) {
+        return slot(key, false) >= 0;
+    }
+
+    @Override
+    public synchronized Object put(String key, Object value) {
+        Objects.requireNonNull(value);
+        final Object shared = share(value);
+        int i = slot(key, true);
+        if (i >= 0) {
+            final Object old = objects[i];
+            objects[i] = shared;
+            release(old);
+            return old;
+        }
+        i = -i - 1;
+        keys[i] = Arrays.copyOf(ids, length);
+        hashes[i] = hash(keys[i]);
+        objects[i] = shared;
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized Object remove(String key) {
+        final int i = slot(key, false);
+        if (i < 0) {
+            return null;
+        }
+        final Object old = objects[i];
+        delete(i);
+        return old;
+    }
+
+    @Override
+    public synchronized boolean remove(String key, Object value) {
+        final int i = slot(key, false);
+        if (i < 0 || !Objects.equals(objects[i], value)) {
+            return false;
+        }
+        delete(i);
+        return true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized Set<String> stringPropertyNames() {
+        final Set<String> names = new HashSet<>(size * 2);
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (null != keys[i] && objects[i] instanceof String) {
+                names.add(toKey(keys[i], builder));
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public synchronized void clear() {
+        keys = new int[16][];
+        hashes = new int[16];
+        objects = new Object[16];
+        values.clear();
+        size = 0;
+    }
+
+    @Override
+    public Object lock() {
+        return this;
+    }
+
+    @Override
+    public synchronized KeyIndex index() {
+        return new KeyIndex(segments, stringPropertyNames());
+    }
+
+    @Override
+    public synchronized Footprint footprint(KeyIndex index) {
+        long bytes = Footprint.array(keys.length, Footprint.REFERENCE)
+                + Footprint.array(hashes.length, 4)
+                + Footprint.array(objects.length, Footprint.REFERENCE)
+                + segments.footprint();
+        for (int[] key : keys) {
+            if (null != key) {
+                bytes += Footprint.array(key.length, 4);
+            }
+        }
+        long shared = 0L;
+        for (Shared value : values.values()) {
+            // The value, its counter and the dedup table entry
+            shared += Footprint.string(value.value) + Footprint.object(Footprint.REFERENCE + 4)
+                    + Footprint.object(4 + 3 * Footprint.REFERENCE) + Footprint.REFERENCE;
+        }
+        return new Footprint(size, bytes, shared, index.footprint());
+    }
+
+    private String toKey(int[] key, StringBuilder builder) {
+        builder.setLength(0);
+        for (int n = 0; n < key.length; n++) {
+            if (n > 0) {
+                builder.append(KeyIndex.SEPARATOR);
+            }
+            builder.append(segments.segment(key[n]));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Split the key into its segment ids.
+     *
+     * @return false if a segment is not interned
+     */
+    private boolean split(CharSequence key, boolean intern) {
+        if (null == ids) {
+            ids = new int[8];
+        }
+        length = 0;
+        int start = 0;
+        int end;
+        do {
+            end = KeyIndex.indexOf(key, start);
+            if (end < 0) {
+                end = key.length();
+            }
+            final int id = intern ? segments.intern(key, start, end) : segments.find(key, start, end);
+            if (id < 0) {
+                return false;
+            }
+            if (length == ids.length) {
+                ids = Arrays.copyOf(ids, length * 2);
+            }
+            ids[length++] = id;
+            start = end + 1;
+        } while (end < key.length());
+        return true;
+    }
+
+    /**
+     * @return The slot of the key, or <code>-(insertion slot) - 1</code> if not found
+     */
+    private int slot(CharSequence key, boolean intern) {
+        if (!split(key, intern)) {
+            return -1;
+        }
+        final int h = hash(ids, length);
+        final int mask = keys.length - 1;
+        int i = h & mask;
+        while (null != keys[i]) {
+            if (hashes[i] == h && equals(keys[i], ids, length)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+    private void resize(int capacity) {
+        final int[][] oldKeys = keys;
+        final int[] oldHashes = hashes;
+        final Object[] oldObjects = objects;
+        keys = new int[capacity][];
+        hashes = new int[capacity];
+        objects = new Object[capacity];
+        final int mask = capacity - 1;
+        for (int n = 0; n < oldKeys.length; n++) {
+            if (null == oldKeys[n]) {
+                continue;
+            }
+            int i = oldHashes[n] & mask;
+            while (null != keys[i]) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[n];
+            hashes[i] = oldHashes[n];
+            objects[i] = oldObjects[n];
+        }
+    }
+
+    /**
+     * Remove the slot and shift back the following keys of its probe sequence.
+     */
+    private void delete(int slot) {
+        release(objects[slot]);
+        final int mask = keys.length - 1;
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (null == keys[i]) {
+                break;
+            }
+            final int home = hashes[i] & mask;
+            // Move it unless its home lies cyclically in (hole, i]
+            final boolean stay = (hole <= i) ? (hole < home && home <= i) : (hole < home || home <= i);
+            if (!stay) {
+                keys[hole] = keys[i];
+                hashes[hole] = hashes[i];
+                objects[hole] = objects[i];
+                hole = i;
+            }
+        }
+        keys[hole] = null;
+        hashes[hole] = 0;
+        objects[hole] = null;
+        size--;
+    }
+
+    private Object share(Object value) {
+        if (!(value instanceof String)) {
+            return value;
+        }
+        Shared shared = values.get(value);
+        if (null == shared) {
+            shared = new Shared((String) value);
+            values.put(shared.value, shared);
+        }
+        shared.count++;
+        return shared.value;
+    }
+
+    private void release(Object value) {
+        if (!(value instanceof String)) {
+            return;
+        }
+        final Shared shared = values.get(value);
+        if (null != shared && --shared.count == 0) {
+            values.remove(value);
+        }
+    }
+
+    private static int hash(int[] key) {
+        return hash(key, key.length);
+    }
+
+    private static int hash(int[] ids, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + ids[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(int[] key, int[] ids, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != ids[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
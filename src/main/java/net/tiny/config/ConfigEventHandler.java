@@ -0,0 +1,47 @@
+package net.tiny.config;
+
+/**
+ * Receiver of the entries of a configuration resource while it is parsed.
+ *
+ * <p>
+ * The HOCON, JSON, YAML and properties parsers push the flat keys and the raw
+ * values in document order, so a large configuration can be streamed into any
+ * store without building the intermediate <code>Properties</code>.
+ * The given characters are the buffers of the parser, they are only valid during
+ * the call and must be copied to be kept.
+ * A key may be pushed again, the last value overrides the previous one.
+ * <p>
+ * @see ConfigurationHandler#parse(ConfigEventHandler)
+ */
+@FunctionalInterface
+public interface ConfigEventHandler {
+
+    /**
+     * @param key The full dotted key, as <code>a.b.c</code>
+     * @param value The raw value, the references <code>${...}</code> are not resolved
+     */
+    void onEntry(CharSequence key, CharSequence value);
+
+    /**
+     * Called before the entries of a nested object.
+     *
+     * @param key The dotted key of the object
+     */
+    default void onEnterObject(CharSequence key) {}
+
+    /**
+     * Called after the entries of a nested object.
+     *
+     * @param key The dotted key of the object
+     */
+    default void onExitObject(CharSequence key) {}
+
+    /**
+     * Called at an include directive, the entries of the included resource follow
+     * with the parent key as prefix.
+     *
+     * @param href The included resource without quotes, as <code>classpath (a.conf)</code>
+     * @param parentKey The parent keys of the include, as <code>a.b.</code>
+     */
+    default void onInclude(String href, CharSequence parentKey) {}
+}
@@ -5,8 +5,6 @@ import java.io.PrintStream;
 import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -15,15 +13,28 @@ import java.math.BigInteger;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,54 +49,18 @@ public class Configuration implements Serializable {
     private static final String CLASS_KEY = "class";
     private static final String THIS_KEY = "${this}";
 
-    /** Static method exclude filter */
-    private static final Predicate<Method> IS_NOT_STATIC_METHOD = (method) -> !Modifier.isStatic(method.getModifiers());
-
-    /** Public method include filter */
-    private static final Predicate<Method> IS_PUBLIC_METHOD     = (method) -> Modifier.isPublic(method.getModifiers());
-
-    /** Setter method include filter */
-    private static final Predicate<Method> IS_SETTER_METHOD     = (method) -> method.getName().startsWith("set");
-
     private static Logger LOGGER = Logger.getLogger(Configuration.class.getName());
 
-    static abstract class VariablesReplacement {
-        static final int    REFER_MAX = 10;
+    static abstract class VariablesReplacement implements Template.Resolver {
         static final String DOLLAR_BRACKET_START = "${";
         static final String DOLLAR_BRACKET_END = "}";
 
         public String replace(String value, boolean nameOnly) {
-            StringBuffer buffer = new StringBuffer(value);
-            int previousBegin = buffer.lastIndexOf(DOLLAR_BRACKET_START);
-            int previousEnd = buffer.indexOf(DOLLAR_BRACKET_END, previousBegin);
-            if(nameOnly && previousBegin == 0 && previousEnd == (buffer.length()-1)) {
-                return buffer.substring(previousBegin + 2, previousEnd);
-            }
-            int count = 0;
-            while (hasVariables(buffer.toString())) {
-                previousBegin = buffer.lastIndexOf(DOLLAR_BRACKET_START);
-                previousEnd = buffer.indexOf(DOLLAR_BRACKET_END, previousBegin);
-                if(nameOnly && previousBegin == 0 && previousEnd == (buffer.length()-1)) {
-                    return buffer.substring(previousBegin + 2, previousEnd);
-                }
-                String var = buffer.substring(previousBegin + 2, previousEnd);
-                String replaced = replace(var);
-                if (null != replaced) {
-                    if(replaced.equals(DOLLAR_BRACKET_START + var + DOLLAR_BRACKET_END)) {
-                        throw new RuntimeException(
-                                String.format("The property value '%s' can not resue self name.", replaced));
-                    }
-                    buffer.replace(previousBegin, previousEnd + 1, replaced);
-                    count++;
-                    if(count > REFER_MAX) {
-                        throw new RuntimeException(
-                                String.format("Can not cycle reference '%s'.", replaced));
-                    }
-                } else {
-                    return null;
-                }
+            Template template = compile(value);
+            if(nameOnly && template.isReference()) {
+                return template.name(this);
             }
-            return buffer.toString();
+            return template.evaluate(this);
         }
 
         public String replaceName(String value) {
@@ -102,30 +77,157 @@ public class Configuration implements Serializable {
             return value.contains(DOLLAR_BRACKET_START) && value.contains(DOLLAR_BRACKET_END);
         }
 
+        @Override
+        public String lookup(String var) {
+            return replace(var);
+        }
+
         abstract String replace(String var);
     }
 
     private final Converter converter;
-    private final Properties properties;
+    /** The store of the root configuration, shared by its sub configurations */
+    private final Store store;
+    private final transient KeyIndex index;
+    /** The read marks of the string keys, shared by the sub configurations */
+    private final transient AccessBits accessed;
+    private final transient ValueCache cache = new ValueCache();
+    private final transient Map<String, Template> templates;
+    private final transient Map<String, Object> lazies = new ConcurrentHashMap<>();
+    private final transient Map<String, Creation> creations;
+    private final transient Map<String, Configuration> views;
+    /** The root configuration of a sub configuration, null if this is the root */
+    private final Configuration root;
+    /** The key prefix of a sub configuration, like <code>'app.sample.'</code> */
     private final String parent;
     private final ContextHandler.Listener listener;
+    /** The access profiler of the root configuration, null if not profiled */
+    private transient volatile AccessProfiler profiler;
 
     public Configuration(Properties defaults, ContextHandler.Listener listener) {
-        this.parent = null;
-        this.properties = defaults;
-        this.listener = listener;
-        this.converter = new Converter();
+        this(new Store.PropertiesStore(defaults), new Converter(), listener);
     }
 
-    private Configuration(String parent, Properties defaults, Converter converter, ContextHandler.Listener listener) {
-        this.parent = parent;
-        this.properties = defaults;
+    private Configuration(Store store, Converter converter, ContextHandler.Listener listener) {
+        this.root = null;
+        this.parent = null;
+        this.store = store;
+        this.index = store.index();
+        this.accessed = new AccessBits(store.stringPropertyNames());
+        this.templates = new ConcurrentHashMap<>();
+        this.creations = new ConcurrentHashMap<>();
+        this.views = new ConcurrentHashMap<>();
         this.converter = converter;
         this.listener = listener;
     }
 
+    /**
+     * A sub configuration is a view of the root store by a key prefix,
+     * the keys are not copied.
+     */
+    private Configuration(Configuration root, String prefix) {
+        this.root = root;
+        this.parent = prefix;
+        this.store = root.store;
+        this.index = root.index;
+        this.accessed = root.accessed;
+        this.templates = root.templates;
+        this.creations = root.creations;
+        this.views = root.views;
+        this.converter = root.converter;
+        this.listener = root.listener;
+    }
+
+    /**
+     * Create a configuration in the compact storage mode.
+     * The key segments are interned and the keys are kept as segment id arrays,
+     * the equal values are stored once. The values are copied, the given properties
+     * are not bound to the configuration.
+     *
+     * @param values The string values
+     * @param listener The listener
+     * @return The compact configuration
+     * @see #footprint()
+     */
+    public static Configuration compact(Properties values, ContextHandler.Listener listener) {
+        final CompactStore store = new CompactStore(new SegmentTable());
+        for (String name : values.stringPropertyNames()) {
+            store.put(name, values.getProperty(name));
+        }
+        return new Configuration(store, new Converter(), listener);
+    }
+
+    /**
+     * Estimate the memory of the keys, the values and the key index of the store.
+     * A sub configuration reports the store of its root.
+     *
+     * @return The memory report
+     */
+    public Footprint footprint() {
+        return this.store.footprint(this.index);
+    }
+
+    /**
+     * Start profiling the reads of the root configuration and its sub
+     * configurations, the profiler is registered as a JMX MBean.
+     * The MBean is unregistered by {@link #destroy()}, which must then be called.
+     *
+     * @return The access profiler
+     * @see AccessProfiler#dump()
+     */
+    public AccessProfiler profile() {
+        final Configuration config = root();
+        synchronized (config.views) {
+            if (null == config.profiler) {
+                AccessProfiler created = new AccessProfiler(config);
+                created.register();
+                config.profiler = created;
+            }
+            return config.profiler;
+        }
+    }
+
+    /**
+     * @return The access profiler, null if not profiled
+     */
+    public AccessProfiler getProfiler() {
+        return root().profiler;
+    }
+
+    private Configuration root() {
+        return (null == root) ? this : root;
+    }
+
+    /**
+     * @return The key of the root store
+     */
+    private String absolute(String key) {
+        return (null == parent) ? key : parent.concat(key);
+    }
+
+    /**
+     * Iterate the string keys starting with the prefix.
+     *
+     * @param prefix The key prefix relative to this configuration, ends with '.'
+     * @param consumer The consumer of the keys relative to this configuration
+     */
+    private void forEachName(String prefix, Consumer<String> consumer) {
+        if (null == parent) {
+            this.index.forEach(prefix, consumer);
+        } else {
+            final int pos = parent.length();
+            this.index.forEach(parent.concat(prefix), name -> consumer.accept(name.substring(pos)));
+        }
+    }
+
     public Set<String> getAllPropertyNames() {
-        return this.properties.stringPropertyNames();
+        if (null == parent) {
+            return this.store.stringPropertyNames();
+        }
+        final Set<String> names = new HashSet<>();
+        final int pos = parent.length();
+        this.index.forEach(parent, name -> names.add(name.substring(pos)));
+        return names;
     }
 
     public Set<String> getPropertyNames(Predicate<String> predicate) {
@@ -133,27 +235,30 @@ public class Configuration implements Serializable {
     }
 
     protected Stream<String> getNameStream(Predicate<String> predicate) {
-        return this.properties.stringPropertyNames().stream().filter(predicate);
+        return getNameStream().filter(predicate);
     }
 
     public boolean contains(String name) {
-        return this.properties.containsKey(name);
+        return this.store.containsKey(absolute(name));
     }
 
     public int size() {
-        return this.properties.size();
+        if (null == parent) {
+            return this.store.size();
+        }
+        return (int) this.index.stream(parent).count();
     }
 
     private Stream<String> getNameStream() {
-        return this.properties.stringPropertyNames().stream();
+        return getAllPropertyNames().stream();
     }
 
     private String getProperty(String key) {
-        return this.properties.getProperty(key);
+        return this.store.getProperty(absolute(key));
     }
 
     private Object getObject(String key) {
-        return this.properties.get(key);
+        return this.store.get(absolute(key));
     }
 
     private void setObject(String key, Object value) {
@@ -164,25 +269,167 @@ public class Configuration implements Serializable {
 	        	listener.cached(key, value, false);
 	        }
     	}
-        this.properties.put(key, value);
+        final String name = absolute(key);
+        this.store.put(name, value);
+        root().invalidate(name);
+        // Only string values are indexed, the same as Properties#stringPropertyNames()
+        if (value instanceof String) {
+            this.index.add(name);
+            this.accessed.add(name);
+        } else {
+            this.index.remove(name);
+            this.accessed.remove(name);
+        }
+    }
+
+    /**
+     * Drop the resolved values depending on a key of the root store,
+     * in this root configuration and in its sub configurations.
+     */
+    private void invalidate(String name) {
+        this.cache.invalidate(name);
+        if (this.views.isEmpty()) {
+            return;
+        }
+        int pos = name.indexOf('.');
+        while (pos > 0) {
+            Configuration view = this.views.get(name.substring(0, pos + 1));
+            if (null != view) {
+                view.cache.invalidate(name.substring(pos + 1));
+            }
+            pos = name.indexOf('.', pos + 1);
+        }
     }
 
     public String getString(String key) {
+        final AccessProfiler profiler = root().profiler;
+        String resolved = this.cache.get(key);
+        if(null != resolved) {
+            if (null != profiler) {
+                profiler.read(absolute(key), true);
+            }
+            return resolved;
+        }
         String value = getProperty(key);
+        // The cached values have been marked on the first read
+        this.accessed.mark(absolute(key));
         if(VariablesReplacement.hasVariables(value)) {
-            return getReference(value);
+            // Memoize the resolved value with the names it refers to
+            final long start = (null == profiler) ? 0L : System.nanoTime();
+            final long stamp = this.cache.stamp();
+            final Set<String> references = new HashSet<>();
+            resolved = getReference(value, references);
+            this.cache.put(key, resolved, references, stamp);
+            if (null != profiler) {
+                profiler.resolved(absolute(key), System.nanoTime() - start);
+                // The referred keys are in use too
+                for (String name : references) {
+                    profiler.read(absolute(name), false);
+                }
+            }
+            return resolved;
+        }
+        if (null != profiler) {
+            profiler.read(absolute(key), false);
         }
         return value;
     }
 
     protected <T> T getValue(Class<T> classType, String key) {
-        return this.converter.convert(getString(key), classType);
+        return convert(key, getString(key), classType);
+    }
+
+    private <T> T convert(String key, String value, Class<T> classType) {
+        final AccessProfiler profiler = root().profiler;
+        if (null == profiler) {
+            return this.converter.convert(value, classType);
+        }
+        final long start = System.nanoTime();
+        try {
+            return this.converter.convert(value, classType);
+        } finally {
+            profiler.converted(absolute(key), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Count a read of the primitive value cache.
+     */
+    private void hit(String key) {
+        final AccessProfiler profiler = root().profiler;
+        if (null != profiler) {
+            profiler.read(absolute(key), true);
+        }
     }
 
     public Integer getInteger(String key) {
         return getValue(Integer.class, key);
     }
 
+    public int getInt(String key, int defaultValue) {
+        ValueCache.Primitive primitive = this.cache.getPrimitive(key, int.class);
+        if(null != primitive) {
+            hit(key);
+            return (int)primitive.bits;
+        }
+        final long stamp = this.cache.stamp();
+        String value = getString(key);
+        if(null == value) {
+            return defaultValue;
+        }
+        int ret = convert(key, value, int.class);
+        this.cache.putPrimitive(key, int.class, ret, stamp);
+        return ret;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        ValueCache.Primitive primitive = this.cache.getPrimitive(key, long.class);
+        if(null != primitive) {
+            hit(key);
+            return primitive.bits;
+        }
+        final long stamp = this.cache.stamp();
+        String value = getString(key);
+        if(null == value) {
+            return defaultValue;
+        }
+        long ret = convert(key, value, long.class);
+        this.cache.putPrimitive(key, long.class, ret, stamp);
+        return ret;
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        ValueCache.Primitive primitive = this.cache.getPrimitive(key, double.class);
+        if(null != primitive) {
+            hit(key);
+            return Double.longBitsToDouble(primitive.bits);
+        }
+        final long stamp = this.cache.stamp();
+        String value = getString(key);
+        if(null == value) {
+            return defaultValue;
+        }
+        double ret = convert(key, value, double.class);
+        this.cache.putPrimitive(key, double.class, Double.doubleToRawLongBits(ret), stamp);
+        return ret;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        ValueCache.Primitive primitive = this.cache.getPrimitive(key, boolean.class);
+        if(null != primitive) {
+            hit(key);
+            return primitive.bits != 0L;
+        }
+        final long stamp = this.cache.stamp();
+        String value = getString(key);
+        if(null == value) {
+            return defaultValue;
+        }
+        boolean ret = convert(key, value, boolean.class);
+        this.cache.putPrimitive(key, boolean.class, ret ? 1L : 0L, stamp);
+        return ret;
+    }
+
     public Long getLong(String key) {
         return getValue(Long.class, key);
     }
@@ -228,11 +475,140 @@ public class Configuration implements Serializable {
         // Generate a sub configuration by the key
         Properties prop = new Properties();
         int pos = prefix.length();
-        getNameStream().filter(k -> k.startsWith(prefix))
-                .forEach(name -> prop.setProperty(name.substring(pos), getString(name)));
+        forEachName(prefix, name -> {
+            String value = getString(name);
+            if (null != value) {
+                prop.setProperty(name.substring(pos), value);
+            }
+        });
         return prop;
     }
 
+    /**
+     * Visit the raw string values under the key prefix straight from the store,
+     * without copying the keys nor resolving the values.
+     * The key is relative to the prefix, the key and the value are only valid
+     * during the call. Use a {@link #cursor(String)} to resolve the values on demand.
+     *
+     * @param prefix The key prefix, like <code>'app.web'</code>, or empty for all keys
+     * @param action The consumer of the keys and the raw values
+     */
+    public void forEach(String prefix, BiConsumer<CharSequence, CharSequence> action) {
+        final Cursor cursor = cursor(prefix);
+        while (cursor.next()) {
+            action.accept(cursor.getKey(), cursor.getValue());
+        }
+    }
+
+    /**
+     * @param prefix The key prefix, like <code>'app.web'</code>, or empty for all keys
+     * @return A cursor of the entries under the prefix
+     * @see Cursor
+     */
+    public Cursor cursor(String prefix) {
+        String start = prefix.isEmpty() || prefix.endsWith(".") ? prefix : prefix.concat(".");
+        return new Cursor(absolute(start));
+    }
+
+    /**
+     * A forward cursor of the string entries under a key prefix.
+     *
+     * <p>
+     * The entries are read straight from the store, the values are resolved
+     * only when {@link #getString()} is called.
+     * The key and the raw value are only valid until the next move.
+     * <p>
+     * <code>
+     * Configuration.Cursor cursor = config.cursor("routes");
+     * while (cursor.next()) {
+     *     route(cursor.getKey(), cursor.getString());
+     * }
+     * </code>
+     */
+    public final class Cursor {
+        private final KeyIndex.Cursor keys;
+        private final Slice key;
+        private CharSequence value;
+
+        private Cursor(String prefix) {
+            this.keys = index.cursor(prefix);
+            this.key = new Slice(prefix.length());
+        }
+
+        /**
+         * @return true if moved to the next entry
+         */
+        public boolean next() {
+            while (keys.next()) {
+                final CharSequence name = keys.key();
+                final Object raw = store.find(name);
+                if (raw instanceof String) {
+                    key.base = name;
+                    value = (String) raw;
+                    return true;
+                }
+            }
+            key.base = null;
+            value = null;
+            return false;
+        }
+
+        /**
+         * @return The key relative to the prefix
+         */
+        public CharSequence getKey() {
+            return key;
+        }
+
+        /**
+         * @return The value as stored, the <code>${...}</code> are not resolved
+         */
+        public CharSequence getValue() {
+            return value;
+        }
+
+        /**
+         * @return The resolved value
+         */
+        public String getString() {
+            final CharSequence name = key.base;
+            final int pos = (null == parent) ? 0 : parent.length();
+            return Configuration.this.getString(name.subSequence(pos, name.length()).toString());
+        }
+    }
+
+    /**
+     * The tail of a reused key buffer.
+     */
+    private static final class Slice implements CharSequence {
+        private final int offset;
+        private CharSequence base;
+
+        Slice(int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public int length() {
+            return base.length() - offset;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return base.charAt(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return base.subSequence(offset + start, offset + end);
+        }
+
+        @Override
+        public String toString() {
+            return base.subSequence(offset, base.length()).toString();
+        }
+    }
+
     public <T> T[] getValues(String key, Class<T> classType) {
         return this.converter.convertArray(getString(key), classType);
     }
@@ -254,39 +630,34 @@ public class Configuration implements Serializable {
     }
 
     public <T> Configuration getConfiguration(String key, Class<T> beanClass) {
-        String prefix = key + ".";
-        if(contains(prefix)) {
-            // Found from cache
-            Object conf = getObject(prefix);
-            if(conf instanceof Configuration) {
-                return (Configuration)conf;
-            }
-        }
-        // Generate a sub configuration by the key
-        Configuration config = findConfiguration(prefix, beanClass);
-        if(null != config) {
-            // Cache config by the prefix key
-            setObject(prefix, config);
-        }
-        return config;
+        return findConfiguration(key + ".", beanClass);
     }
 
+    /**
+     * @param key The key prefix, ends with '.'
+     * @return The sub configuration viewing the keys of the prefix, null if not found
+     */
     private <T> Configuration findConfiguration(String key, Class<T> beanClass) {
-        // Generate a sub configuration by the key
-        Properties prop = new Properties();
-        int pos = key.length();
-        getNameStream().filter(k -> k.startsWith(key))
-                .forEach(name -> pushValue(prop, pos, name, beanClass));
-        if(!prop.isEmpty()) {
-            return new Configuration(key, prop, this.converter, this.listener);
+        String prefix = absolute(key);
+        if(!this.index.hasPrefix(prefix)) {
+            return null;
         }
-        return null;
+        return root().view(prefix);
     }
 
-    private <T> void pushValue(Properties prop, int pos, String name, Class<T> beanClass) {
-        String key = name.substring(pos);
-        String value = getProperty(name);
-        prop.put(key, value);
+    private Configuration view(String prefix) {
+        Configuration view = this.views.get(prefix);
+        if(null == view) {
+            Configuration config = new Configuration(this, prefix);
+            view = this.views.putIfAbsent(prefix, config);
+            if(null == view) {
+                view = config;
+                if (listener != null) {
+                    listener.cached(prefix, view, true);
+                }
+            }
+        }
+        return view;
     }
 
     Object getReference(String ref, Class<?> beanClass) {
@@ -326,19 +697,17 @@ public class Configuration implements Serializable {
             }
             if (VariablesReplacement.hasVariables(value)) {
                 String[] array = value.split(LIST_REGEX);
-                VariablesReplacement replacement = new VariablesReplacement() {
-                    @Override
-                    String replace(String var) {
-                        return properties.getProperty(var);
-                    }
-                };
+                VariablesReplacement replacement = new PropertyResolver();
                 for(String var : array) {
                     String propertyName = replacement.replaceName(var);
                     if(contains(propertyName)) {
                         beans.add(getObject(propertyName));
                     } else {
                         // To find it
-                        Object obj = getAs(propertyName, getMemberType(field));
+                        Class<?> memberType = getMemberType(field);
+                        Object obj = isLazy(propertyName, memberType)
+                                ? getLazy(propertyName, memberType)
+                                : getAs(propertyName, memberType);
                         if(null != obj) {
                             beans.add(obj);
                         } else {
@@ -360,17 +729,79 @@ public class Configuration implements Serializable {
         }
     }
 
+    /**
+     * @return true if the bean is configured with <code>lazy = true</code> and referred by an interface
+     */
+    private boolean isLazy(String key, Class<?> type) {
+        return null != type && type.isInterface() && isLazy(key);
+    }
+
+    private boolean isLazy(String key) {
+        return null != getProperty(key + ".class") && getBoolean(key + ".lazy", false);
+    }
+
+    /**
+     * @return The proxy of the lazy bean, the real bean is created on the first method call
+     * @see LazyBean
+     */
+    private Object getLazy(String key, Class<?> type) {
+        return this.lazies.computeIfAbsent(key + "@" + type.getName(), k -> LazyBean.proxy(this, key, type));
+    }
+
     String getReference(String value) {
-        try {
-            return new VariablesReplacement() {
-                @Override
-                String replace(String var) {
-                    return properties.getProperty(var);
+        return getReference(value, new HashSet<>());
+    }
+
+    private String getReference(String value, Set<String> references) {
+        return compile(value).evaluate(new PropertyResolver() {
+            @Override
+            String replace(String var) {
+                references.add(var);
+                accessed.mark(absolute(var));
+                return super.replace(var);
+            }
+        });
+    }
+
+    /** Resolve raw property values with the compiled templates of this configuration */
+    private class PropertyResolver extends VariablesReplacement {
+        @Override
+        String replace(String var) {
+            return getProperty(var);
+        }
+
+        @Override
+        public Template compile(String value) {
+            return Configuration.this.compile(value);
+        }
+    }
+
+    private Template compile(String value) {
+        return this.templates.computeIfAbsent(value, Template::compile);
+    }
+
+    /**
+     * Check the <code>${...}</code> references between all properties.
+     *
+     * @throws RuntimeException If the references have a cycle,
+     *         the message shows the cycle path like <code>'a -> b -> a'</code>.
+     */
+    public void validate() {
+        final Template.Resolver resolver = new PropertyResolver();
+        Map<String, Set<String>> graph = new HashMap<>();
+        for (String name : getAllPropertyNames()) {
+            String value = getProperty(name);
+            if (VariablesReplacement.hasVariables(value)) {
+                Set<String> references = compile(value).references(resolver);
+                if (!references.isEmpty()) {
+                    graph.put(name, references);
                 }
-            }.replaceValue(value);
-        } catch(StackOverflowError ex) {
+            }
+        }
+        List<String> cycle = Template.findCycle(graph);
+        if (!cycle.isEmpty()) {
             throw new RuntimeException(
-                    String.format("The property value '%1$s' can not resue self name.", value));
+                    String.format("Can not cycle reference '%s'.", String.join(" -> ", cycle)));
         }
     }
 
@@ -385,20 +816,58 @@ public class Configuration implements Serializable {
         return getAs(key, beanClass);
     }
 
+    /**
+     * Get the bean of the key, the bean is created once and cached.
+     * When threads require the same key at the same time, one creates the bean
+     * and the others wait for it, the creation of other keys is never blocked.
+     */
     @SuppressWarnings("unchecked")
     public <T> T getAs(String key, Class<T> beanClass) {
+        while (true) {
+            if(contains(key)) {
+                // Found from cache
+                Object t = getObject(key);
+                if(beanClass.isInstance(t)) {
+                    return (T)t;
+                } else if ((t instanceof String) && VariablesReplacement.hasVariables(t.toString())){
+                    this.accessed.mark(absolute(key));
+                    // Lookup reference object
+                    Field f = FieldBean.getField(beanClass);
+                    if (f != null)
+                        return beanClass.cast(getReference(t.toString(), f)); // For list...
+                    else
+                        return beanClass.cast(getReference(t.toString(), beanClass));
+                }
+            }
+            Creation creation = new Creation();
+            Creation running = this.creations.putIfAbsent(absolute(key), creation);
+            if (null == running) {
+                try {
+                    T bean = create(key, beanClass);
+                    creation.complete(bean);
+                    return bean;
+                } catch (RuntimeException | Error ex) {
+                    creation.completeExceptionally(ex);
+                    throw ex;
+                } finally {
+                    this.creations.remove(absolute(key), creation);
+                }
+            }
+            Object bean = running.await(key);
+            if (null == bean || beanClass.isInstance(bean)) {
+                return (T)bean;
+            }
+            // Created as an other type
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T create(String key, Class<T> beanClass) {
         if(contains(key)) {
-            // Found from cache
+            // Created by other thread
             Object t = getObject(key);
             if(beanClass.isInstance(t)) {
                 return (T)t;
-            } else if ((t instanceof String) && VariablesReplacement.hasVariables(t.toString())){
-                // Lookup reference object
-                Field f = FieldBean.getField(beanClass);
-                if (f != null)
-                    return beanClass.cast(getReference(t.toString(), f)); // For list...
-                else
-                    return beanClass.cast(getReference(t.toString(), beanClass));
             }
         }
         T bean = null;
@@ -417,122 +886,161 @@ public class Configuration implements Serializable {
         return bean;
     }
 
+    /**
+     * The running creation of a bean, shared by the threads requiring the same key.
+     * A thread waits for one creation at a time, the waits are kept to find a cycle
+     * of creations waiting for each other across the threads.
+     */
+    private static final class Creation extends CompletableFuture<Object> {
+        /** The creation waited by each thread */
+        private static final Map<Thread, Creation> WAITS = new HashMap<>();
+
+        private final Thread owner = Thread.currentThread();
+
+        Object await(String key) {
+            final Thread current = Thread.currentThread();
+            synchronized (WAITS) {
+                // Follow the owners waiting for other running creations,
+                // a wait back to this thread would never end
+                Thread thread = owner;
+                while (null != thread) {
+                    if (thread == current) {
+                        throw new RuntimeException(String.format("Can not cycle reference bean '%s'.", key));
+                    }
+                    Creation waited = WAITS.get(thread);
+                    thread = (null == waited || waited.isDone()) ? null : waited.owner;
+                }
+                WAITS.put(current, this);
+            }
+            try {
+                return join();
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error)cause;
+                }
+                throw new RuntimeException(cause.getMessage(), cause);
+            } finally {
+                synchronized (WAITS) {
+                    WAITS.remove(current);
+                }
+            }
+        }
+    }
+
     private boolean hasPrefixKey(String key) {
-        String prefix = key + ".";
-        return getNameStream().anyMatch(k -> k.startsWith(prefix));
+        return this.index.hasPrefix(absolute(key) + ".");
     }
 
     protected <T> T getAsBean(Class<T> beanClass, Configuration config) {
         try {
-            T  bean;
-            Class<?> implementClass = null;
+            Class<?> implementClass = beanClass;
             if(beanClass.isInterface() || Modifier.isAbstract( beanClass.getModifiers())) {
                 // For implement class name
                 String className = config.getString(CLASS_KEY);
                 implementClass = Class.forName(className);
-                bean = beanClass.cast(implementClass.newInstance());
-            } else {
-                bean = beanClass.newInstance();
-                implementClass = beanClass;
             }
-            bean = beanClass.cast( reweave(implementClass, bean, config));
+            BindingPlan plan = BindingPlan.of(implementClass);
+            T bean = beanClass.cast(bind(plan, plan.newInstance(), config));
             if (listener != null) {
             	listener.created(bean, beanClass);
             }
             return bean;
-        } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+        } catch (ClassNotFoundException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
     public <T> Object reweave(Class<T> beanClass, Object bean, Configuration config) {
-        Stream<Field> fields = Reflections.getFieldStream(beanClass);
-        Streams.Pair<Stream<Field>, Stream<Field>> pair = Streams.split(fields, field -> config.contains(field.getName()));
-        // Set self field value.
-        pair.getLeft()
-            .forEach(field -> setFieldValue(bean, field, config));
-
-        // Set self by setter method without fields.
-        Stream<Method> methods = Reflections.getSetterStream(beanClass, IS_NOT_STATIC_METHOD.and(IS_PUBLIC_METHOD).and(IS_SETTER_METHOD));
-        methods.forEach(method -> setPropertyValue(bean, method, config));
-
-        // Set member class field value.
-        pair.getRight()
-            .filter(field -> config.hasPrefixKey(field.getName()))
-            .forEach(field -> setFieldValue(bean, field, getAsBean(field.getType(), config.findConfiguration(field.getName() +".", field.getType()))));
-        return bean;
+        return bind(BindingPlan.of(beanClass), bean, config);
     }
 
     protected Object getAsBean(Configuration config) {
         try {
             // For implement class name
         	final String className = config.getString(CLASS_KEY);
-            final Class<?> implementClass = Class.forName(className);
-            final Object bean = implementClass.newInstance();
-            Stream<Field> fields = Reflections.getFieldStream(implementClass);
-            Streams.Pair<Stream<Field>, Stream<Field>> pair = Streams.split(fields, field -> config.contains(field.getName()));
-            // Set self field value.
-            pair.getLeft()
-                .forEach(field -> setFieldValue(bean, field, config));
-
-            // Set self by setter method without fields.
-            Stream<Method> methods = Reflections.getSetterStream(implementClass, IS_NOT_STATIC_METHOD.and(IS_PUBLIC_METHOD).and(IS_SETTER_METHOD));
-            methods.forEach(method -> setPropertyValue(bean, method, config));
-
-            // Set member class field value.
-            pair.getRight()
-                .filter(field -> config.hasPrefixKey(field.getName()))
-                .forEach(field -> setFieldValue(bean, field, getAsBean(field.getType(), config.findConfiguration(field.getName() +".", field.getType()))));
+            final BindingPlan plan = BindingPlan.of(Class.forName(className));
+            final Object bean = bind(plan, plan.newInstance(), config);
             if (listener != null) {
-            	listener.created(bean, implementClass);
+            	listener.created(bean, plan.type);
             }
             return bean;
-        } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+        } catch (ClassNotFoundException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
-    private void setFieldValue(Object bean, Field field, Configuration config)   {
-        String value = config.getProperty(field.getName());
+    private Object bind(BindingPlan plan, Object bean, Configuration config) {
+        // Set self field value.
+        for (BindingPlan.Binding field : plan.fields) {
+            if (config.contains(field.name)) {
+                setFieldValue(bean, field, config);
+            }
+        }
+        // Set self by setter method without fields.
+        for (BindingPlan.Binding property : plan.properties) {
+            setPropertyValue(bean, property, config);
+        }
+        // Set member class field value.
+        for (BindingPlan.Binding field : plan.fields) {
+            if (!config.contains(field.name) && config.hasPrefixKey(field.name)) {
+                Object member = getAsBean(field.type, config.findConfiguration(field.name + ".", field.type));
+                if (null != member) {
+                    field.set(bean, member);
+                }
+            }
+        }
+        return bean;
+    }
+
+    private void setFieldValue(Object bean, BindingPlan.Binding field, Configuration config)   {
+        String value = config.getProperty(field.name);
         Object data = null;
+        this.accessed.mark(config.absolute(field.name));
+        final AccessProfiler profiler = getProfiler();
         if(VariablesReplacement.hasVariables(value)) {
-            data = getReference(value, field);
+            final long start = (null == profiler) ? 0L : System.nanoTime();
+            data = getReference(value, field.field);
+            if (null != profiler) {
+                profiler.resolved(config.absolute(field.name), System.nanoTime() - start);
+            }
         } else {
-            data = this.converter.convert(value, field.getType());
+            final long start = (null == profiler) ? 0L : System.nanoTime();
+            data = field.convert(value, this.converter);
+            if (null != profiler) {
+                profiler.read(config.absolute(field.name), false);
+                profiler.converted(config.absolute(field.name), System.nanoTime() - start);
+            }
         }
         if(null != data) {
-            field.setAccessible(true);
-            try {
-                field.set(bean, data);
-            } catch (IllegalArgumentException | IllegalAccessException e) {
-                throw new RuntimeException(e.getMessage(), e);
-            }
+            field.set(bean, data);
         }
     }
 
-    private void setFieldValue(Object bean, Field field, Object value)   {
-        field.setAccessible(true);
+    private void setPropertyValue(Object bean, BindingPlan.Binding property, Configuration config) {
+        String value = config.getString(property.name);
         if(null != value) {
-            try {
-                field.set(bean, value);
-            } catch (IllegalArgumentException | IllegalAccessException e) {
-                throw new RuntimeException(e.getMessage(), e);
-            }
+            property.set(bean, property.convert(value, this.converter));
         }
     }
 
-    private void setPropertyValue(Object bean, Method setter, Configuration config) {
-        try {
-            char c = Character.toLowerCase(setter.getName().charAt(3));
-            String fieldName = new StringBuilder().append(c).append(setter.getName().substring(4)).toString();
-            String value = config.getString(fieldName);
-            if(null != value) {
-                Object parameter = this.converter.convert(value, setter.getParameterTypes()[0]);
-                setter.invoke(bean, parameter);
-            }
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            throw new RuntimeException(e.getMessage(), e);
+    /**
+     * Resolve all string values into an immutable snapshot for read-mostly access.
+     *
+     * @return The resolved snapshot
+     * @see Snapshot
+     */
+    public Snapshot freeze() {
+        Set<String> names = getAllPropertyNames();
+        String[] keys = names.toArray(new String[names.size()]);
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = getString(keys[i]);
         }
+        return new Snapshot(keys, values, this.converter);
     }
 
     protected void writeTo(PrintStream out) {
@@ -540,6 +1048,96 @@ public class Configuration implements Serializable {
         getNameStream().forEach(name -> out.println(String.format("#\t%1$s = %2$s", name, getString(name))));
     }
 
+    /**
+     * Apply the reloaded values of the resource.
+     * The string values are replaced under the lock of the store, then the
+     * cached beans whose keys, or the keys their values refer to, have been changed
+     * are bound again in place. A bean whose class has been changed is dropped
+     * and will be created again on demand.
+     *
+     * @param values The reloaded values
+     * @return The added, modified and removed keys
+     */
+    Set<String> reload(Properties values) {
+        final Set<String> changed = new TreeSet<>();
+        final Set<String> beans = new TreeSet<>();
+        final Set<String> affected;
+        synchronized (this.store.lock()) {
+            for (String name : getAllPropertyNames()) {
+                if (null == values.getProperty(name)) {
+                    this.store.remove(name);
+                    this.index.remove(name);
+                    this.accessed.remove(name);
+                    invalidate(name);
+                    changed.add(name);
+                }
+            }
+            for (String name : values.stringPropertyNames()) {
+                String value = values.getProperty(name);
+                if (!value.equals(getObject(name))) {
+                    this.store.put(name, value);
+                    this.index.add(name);
+                    this.accessed.add(name);
+                    invalidate(name);
+                    changed.add(name);
+                }
+            }
+            if (changed.isEmpty()) {
+                return changed;
+            }
+            affected = referrers(changed);
+            for (String name : affected) {
+                // Find the beans of the parent keys
+                int pos = name.indexOf('.');
+                while (pos > 0) {
+                    String key = name.substring(0, pos);
+                    Object bean = getObject(key);
+                    if (null != bean && !(bean instanceof String) && !(bean instanceof Configuration)) {
+                        beans.add(key);
+                    }
+                    pos = name.indexOf('.', pos + 1);
+                }
+            }
+        }
+        // Bind outside the lock, the references may be created by other threads
+        for (String key : beans) {
+            Object bean = getObject(key);
+            Configuration config = getConfiguration(key);
+            if (null == config || affected.contains(key + "." + CLASS_KEY)) {
+                this.store.remove(key, bean);
+            } else {
+                reweave(bean.getClass(), bean, config);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The names and all the names referring to them by <code>${...}</code>
+     */
+    private Set<String> referrers(Set<String> names) {
+        final Template.Resolver resolver = new PropertyResolver();
+        Map<String, Set<String>> referrers = new HashMap<>();
+        for (String name : getAllPropertyNames()) {
+            String value = getProperty(name);
+            if (VariablesReplacement.hasVariables(value)) {
+                for (String ref : compile(value).references(resolver)) {
+                    referrers.computeIfAbsent(ref, k -> new HashSet<>()).add(name);
+                }
+            }
+        }
+        Set<String> affected = new HashSet<>(names);
+        Deque<String> queue = new ArrayDeque<>(names);
+        while (!queue.isEmpty()) {
+            for (String referrer : referrers.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (affected.add(referrer)) {
+                    queue.add(referrer);
+                }
+            }
+        }
+        return affected;
+    }
+
     public Set<String> findUnimplements() {
     	Set<String> names = new HashSet<>();
     	for (String name :  getAllPropertyNames()) {
@@ -553,24 +1151,127 @@ public class Configuration implements Serializable {
     	return names;
     }
 
+    /**
+     * Find the keys never read since the configuration was created.
+     * The keys are found by a scan of the read marks, no value is resolved
+     * and no bean is created.
+     *
+     * @return The unreferenced keys of the root configuration
+     */
+    public Set<String> findUnreferenced() {
+        return this.accessed.unmarked();
+    }
+
+    /**
+     * Create the beans which have not been referenced yet.
+     *
+     * @return The keys of the created beans
+     * @see #findUnreferenced()
+     */
     public Set<String> remains() {
-    	Set<String> names = new HashSet<>();
-    	Set<String> keys = findUnimplements();
-    	for (String key :  keys) {
-    		final String className = getProperty(key + ".class");
-    		try {
-				getAs(key, Class.forName(className));
-				names.add(key);
-			} catch (ClassNotFoundException e) {
-				LOGGER.log(Level.WARNING,
-						String.format("Remains '%s' failed. Not found '%s' class.", key, className), e);
-			}
-    	}
-    	return names;
+        return instantiate(ForkJoinPool.commonPool(), findUnimplements());
+    }
+
+    /**
+     * Create the beans referred by the keys and all beans they depend on.
+     * Independent beans are created concurrently, a bean is created after all
+     * the beans referred by its <code>${...}</code> values.
+     *
+     * @param pool The pool to create beans
+     * @param keys The bean keys, or keys referring beans like <code>main = ${a}, ${b}</code>
+     * @return The keys of the created beans
+     */
+    public Set<String> instantiate(ForkJoinPool pool, String... keys) {
+        return instantiate(pool, Arrays.asList(keys));
+    }
+
+    public Set<String> instantiate(ForkJoinPool pool, Collection<String> keys) {
+        final Template.Resolver resolver = new PropertyResolver();
+        Deque<String> queue = new ArrayDeque<>();
+        for (String key : keys) {
+            if (isUnimplemented(key)) {
+                queue.add(key);
+            } else {
+                String value = getProperty(key);
+                if (VariablesReplacement.hasVariables(value)) {
+                    queue.addAll(compile(value).references(resolver));
+                }
+            }
+        }
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        while (!queue.isEmpty()) {
+            String key = queue.poll();
+            if (dependencies.containsKey(key) || !isUnimplemented(key) || isLazy(key)) {
+                // Lazy beans are created on demand
+                continue;
+            }
+            final Set<String> references = new LinkedHashSet<>();
+            forEachName(key + ".", name -> {
+                String value = getProperty(name);
+                if (VariablesReplacement.hasVariables(value)) {
+                    for (String ref : compile(value).references(resolver)) {
+                        if (!ref.equals(key) && isUnimplemented(ref) && !isLazy(ref)) {
+                            references.add(ref);
+                        }
+                    }
+                }
+            });
+            dependencies.put(key, references);
+            queue.addAll(references);
+        }
+        if (dependencies.isEmpty()) {
+            return new HashSet<>();
+        }
+        BeanGraph graph = new BeanGraph(dependencies);
+        long start = System.currentTimeMillis();
+        Map<String, Object> beans = graph.execute(key -> {
+            final String className = getProperty(key + ".class");
+            try {
+                return getAs(key, Class.forName(className));
+            } catch (ClassNotFoundException e) {
+                LOGGER.log(Level.WARNING,
+                        String.format("Remains '%s' failed. Not found '%s' class.", key, className), e);
+                return null;
+            }
+        }, pool);
+        LOGGER.info(String.format("[CONFIG] Created %d bean(s) in %dms. Critical path: %s",
+                beans.size(), (System.currentTimeMillis() - start), graph.report()));
+        return new HashSet<>(beans.keySet());
+    }
+
+    private boolean isUnimplemented(String key) {
+        return null != getProperty(key + ".class") && !contains(key);
     }
 
     public void destroy() {
-        properties.clear();
+        cache.clear();
+        lazies.clear();
+        if (null != root) {
+            // The store is owned by the root
+            return;
+        }
+        store.clear();
+        index.clear();
+        accessed.clear();
+        templates.clear();
+        if (null != profiler) {
+            profiler.unregister();
+            profiler = null;
+        }
+        for (Configuration view : views.values()) {
+            view.destroy();
+        }
+        views.clear();
+    }
+
+    /**
+     * Rebuild the transient index and caches after deserialization.
+     */
+    private Object readResolve() {
+        if (null != root) {
+            return root.view(parent);
+        }
+        return new Configuration(store, converter, listener);
     }
 
     @Override
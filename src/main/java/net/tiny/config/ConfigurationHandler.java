@@ -1,21 +1,33 @@
 package net.tiny.config;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 public final class ConfigurationHandler implements ContextHandler {
@@ -31,10 +43,21 @@ public final class ConfigurationHandler implements ContextHandler {
     private final static char QUOTE = '\'';
     private final static char DOUBLE_QUOTE = '"';
     private final static String INCLUDE = "include";
+    private final static String SNAPSHOT = "SNAPSHOT";
+    private final static String CACHED = "CACHED";
+    private final static int INCLUDE_PARALLELISM = 8;
 
     private Listener listener = null;
     private String resource;
+    private List<String> resources = null;
     private Configuration configuration;
+    private boolean compact = false;
+    private File cacheDirectory = null;
+    private ForkJoinPool includePool = null;
+    private final Set<URL> sources = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    /** The shared pool loading the includes, created on first use */
+    private static ForkJoinPool sharedIncludePool = null;
 
     @Override
     public Listener getListener() {
@@ -53,6 +76,88 @@ public final class ConfigurationHandler implements ContextHandler {
     @Override
     public void setResource(String resource) {
         this.resource = resource;
+        this.resources = null;
+    }
+
+    /**
+     * @return The chain of the resources, a later resource overrides the former ones
+     */
+    public List<String> getResources() {
+        if (null != this.resources) {
+            return this.resources;
+        }
+        return (null == this.resource) ? Collections.emptyList() : Collections.singletonList(this.resource);
+    }
+
+    /**
+     * Set an ordered chain of resources, as the base, the profile and the host
+     * configurations. They are parsed concurrently on the include pool and merged
+     * into one key space, the values of a later resource override the former ones.
+     * The first resource is the {@link #getResource() resource} of this handler.
+     *
+     * @param resources The resources from the lowest to the highest precedence
+     */
+    public void setResources(List<String> resources) {
+        if (null == resources || resources.isEmpty()) {
+            throw new IllegalArgumentException("Must be set one resource at least.");
+        }
+        this.resource = resources.get(0);
+        this.resources = Collections.unmodifiableList(new ArrayList<>(resources));
+    }
+
+    public boolean isCompact() {
+        return this.compact;
+    }
+
+    /**
+     * Store the parsed values in the compact mode, for large configurations
+     * with many long keys.
+     *
+     * @param compact true to intern the key segments and the values
+     * @see Configuration#compact(Properties, Listener)
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    public File getCacheDirectory() {
+        return this.cacheDirectory;
+    }
+
+    /**
+     * Keep a binary snapshot of the parsed values in the directory. The next
+     * parse loads the snapshot without parsing if the contents of the resource
+     * and its included files are not changed.
+     *
+     * @param directory The snapshot directory, null to disable the snapshot
+     */
+    public void setCacheDirectory(File directory) {
+        this.cacheDirectory = directory;
+    }
+
+    /**
+     * @return The pool loading the included resources
+     */
+    public ForkJoinPool getIncludePool() {
+        if (null != this.includePool) {
+            return this.includePool;
+        }
+        synchronized (ConfigurationHandler.class) {
+            if (null == sharedIncludePool) {
+                sharedIncludePool = new ForkJoinPool(INCLUDE_PARALLELISM);
+            }
+            return sharedIncludePool;
+        }
+    }
+
+    /**
+     * The included resources are fetched and parsed concurrently on the pool,
+     * and merged in declaration order.
+     *
+     * @param pool The pool loading the includes, null to use a shared pool
+     */
+    public void setIncludePool(ForkJoinPool pool) {
+        this.includePool = pool;
     }
 
     @Override
@@ -87,18 +192,172 @@ public final class ConfigurationHandler implements ContextHandler {
     }
 
     /**
+     * Load the chain of resources and merge them, a later resource overrides the former ones.
      *
-     * @param resource
+     * @param chain The resources
      * @see #parse(InputStream)
      */
-    private void loadProperties(String resource) {
-        URL url = toURL(resource);
+    private Properties loadProperties(List<String> chain) {
+        final List<URL> urls = new ArrayList<>(chain.size());
+        final StringBuilder names = new StringBuilder();
+        for (String res : chain) {
+            URL url = toURL(res);
+            urls.add(url);
+            // A URL has no line break
+            names.append(url.toString()).append('\n');
+        }
+        Path snapshot = null;
+        if (null != this.cacheDirectory) {
+            snapshot = this.cacheDirectory.toPath().resolve(
+                    ParseCache.digest(names.toString().getBytes(StandardCharsets.UTF_8)) + ".snapshot");
+            Properties properties = loadSnapshot(snapshot, urls);
+            if (null != properties) {
+                return properties;
+            }
+        }
+        final List<ParseCache.Entry> entries = new ArrayList<>(urls.size());
+        if (urls.size() == 1) {
+            entries.add(loadResource(urls.get(0), guessType(chain.get(0))));
+        } else {
+            // All the resources are loaded at once, and joined in order
+            final List<CompletableFuture<ParseCache.Entry>> futures = new ArrayList<>(urls.size());
+            for (int i = 0; i < urls.size(); i++) {
+                futures.add(loadAsync(urls.get(i), guessType(chain.get(i))));
+            }
+            for (CompletableFuture<ParseCache.Entry> future : futures) {
+                entries.add(join(future));
+            }
+        }
+        // The digests were taken before the sources were read
+        final Map<URL, byte[]> digests = new LinkedHashMap<>();
+        for (ParseCache.Entry entry : entries) {
+            for (int i = 0; i < entry.sources.size(); i++) {
+                digests.putIfAbsent(entry.sources.get(i), entry.digests.get(i));
+            }
+        }
+        synchronized (this.sources) {
+            this.sources.clear();
+            this.sources.addAll(digests.keySet());
+        }
+        // The cached values are shared and never modified. From the highest
+        // precedence, each key is set once with its winning value.
+        Properties properties = new Properties();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            for (Map.Entry<Object, Object> entry : entries.get(i).values.entrySet()) {
+                properties.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        if (null != snapshot && !digests.containsValue(null)) {
+            try {
+                SnapshotFile.write(snapshot, urls, digests, properties);
+            } catch (IOException ex) {
+                LOGGER.warning(String.format("Can not write the snapshot '%s'. %s", snapshot, ex.getMessage()));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Load the resource with its includes, or get it from the shared parse cache
+     * if none of them has been changed.
+     * With a cache directory, the digest of each source is taken for the snapshot.
+     */
+    private ParseCache.Entry loadResource(URL url, Type type) {
+        final boolean digested = null != this.cacheDirectory;
+        // The file includes are resolved against the resource
+        ParseCache.Entry entry = ParseCache.SHARED.get(url, this.resource);
+        if (null != entry && (!digested || !entry.digests.contains(null))) {
+            if (listener != null) {
+                listener.parsed(CACHED, resource, entry.values.size());
+            }
+            return entry;
+        }
+        final List<ParseCache.Entry> included = new ArrayList<>();
+        final String stamp;
+        final byte[] digest;
+        final Properties values;
         try {
-            Type type = guessType(resource);
-            parse(url.openStream(), type);
+            if (ParseCache.isLocal(url)) {
+                // Stamped before reading, a change while parsing is seen by the next load
+                stamp = ParseCache.modified(url);
+                digest = digested ? SnapshotFile.digest(url) : null;
+                try (Reader reader = openReader(url)) {
+                    values = load(reader, type, included);
+                }
+            } else {
+                byte[] content = ParseCache.read(url);
+                stamp = ParseCache.digest(content);
+                digest = SnapshotFile.digest(content);
+                values = load(new ByteBufferReader(ByteBuffer.wrap(content), StandardCharsets.UTF_8), type, included);
+            }
         } catch(IOException ex) {
             throw new RuntimeException(ex.getMessage(), ex);
         }
+        final List<URL> urls = new ArrayList<>();
+        final List<String> stamps = new ArrayList<>();
+        final List<byte[]> digests = new ArrayList<>();
+        urls.add(url);
+        stamps.add(stamp);
+        digests.add(digest);
+        for (ParseCache.Entry include : included) {
+            urls.addAll(include.sources);
+            stamps.addAll(include.stamps);
+            digests.addAll(include.digests);
+        }
+        entry = new ParseCache.Entry(values, urls, stamps, digests);
+        ParseCache.SHARED.put(url, this.resource, entry);
+        return entry;
+    }
+
+    /**
+     * @return The reader of the resource, a local file is decoded straight from its bytes
+     */
+    private static Reader openReader(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return ByteBufferReader.open(Paths.get(url.toURI()));
+            } catch (URISyntaxException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+        return new InputStreamReader(url.openStream(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The values of the snapshot, null if not found or changed
+     */
+    private Properties loadSnapshot(Path snapshot, List<URL> chain) {
+        if (!Files.exists(snapshot)) {
+            return null;
+        }
+        try (SnapshotFile file = SnapshotFile.open(snapshot)) {
+            // The snapshot of exactly the same chain
+            List<URL> stored = file.getChain();
+            if (stored.size() != chain.size()) {
+                return null;
+            }
+            for (int i = 0; i < chain.size(); i++) {
+                if (!chain.get(i).toString().equals(stored.get(i).toString())) {
+                    return null;
+                }
+            }
+            if (!file.isValid()) {
+                return null;
+            }
+            List<URL> urls = file.getSources();
+            Properties properties = file.load();
+            synchronized (this.sources) {
+                this.sources.clear();
+                this.sources.addAll(urls);
+            }
+            if (listener != null) {
+                listener.parsed(SNAPSHOT, resource, properties.size());
+            }
+            return properties;
+        } catch (IOException ex) {
+            LOGGER.warning(String.format("Can not read the snapshot '%s'. %s", snapshot, ex.getMessage()));
+            return null;
+        }
     }
 
     private Type guessType(String resource) {
@@ -121,32 +380,127 @@ public final class ConfigurationHandler implements ContextHandler {
 
     @Override
     public void parse() {
-        loadProperties(getResource());
+        build(loadProperties(getResources()));
     }
 
     @Override
     public void parse(InputStream in, Type type) {
-        Properties properties = load(in, type);
-        this.configuration = new Configuration(properties, listener);
+        build(load(in, type));
+    }
+
+    /**
+     * Parse the resources and push their entries to the handler, the configuration
+     * is not built. The included resources are pushed at their include directives,
+     * the resources of a chain are pushed in order.
+     *
+     * @param events The handler of the parsed entries
+     */
+    public void parse(ConfigEventHandler events) {
+        for (String res : getResources()) {
+            try (Reader reader = openReader(toURL(res))) {
+                stream(reader, guessType(res), events);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Parse the stream and push its entries to the handler, the configuration
+     * is not built.
+     *
+     * @param events The handler of the parsed entries
+     */
+    public void parse(InputStream in, Type type, ConfigEventHandler events) {
+        try {
+            stream(new InputStreamReader(in, StandardCharsets.UTF_8), type, events);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+
+    private void stream(Reader reader, Type type, ConfigEventHandler events) throws IOException {
+        IncludeEvents include = new IncludeEvents(events);
+        parse(reader, type, include);
+        if (listener != null) {
+            listener.parsed(type.name(), resource, include.count);
+        }
+    }
+
+    private void build(Properties properties) {
+        Configuration config = compact
+                ? Configuration.compact(properties, listener) : new Configuration(properties, listener);
+        // Fail fast on cycle references
+        config.validate();
+        this.configuration = config;
+    }
+
+    /**
+     * Parse the resource and its includes again, then apply the changed values
+     * to the current configuration.
+     * If the reloaded values are not valid, the current values are kept.
+     *
+     * @return The added, modified and removed keys
+     * @see ContextHandler.Listener#reloaded(String, Set)
+     */
+    public Set<String> reload() {
+        if (null == this.configuration) {
+            parse();
+            return Collections.emptySet();
+        }
+        Properties properties = loadProperties(getResources());
+        new Configuration(properties, null).validate();
+        Set<String> changed = this.configuration.reload(properties);
+        if (listener != null && !changed.isEmpty()) {
+            listener.reloaded(resource, changed);
+        }
+        return changed;
+    }
+
+    /**
+     * Start watching the resource and its included files, the configuration is
+     * reloaded on change. Only the files on the local file system are watched.
+     *
+     * @return The watcher, to be closed to stop watching
+     */
+    public ConfigurationWatcher watch() {
+        getConfiguration();
+        try {
+            return new ConfigurationWatcher(this);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return The URLs of the resource and its included files of the last parse
+     */
+    Set<URL> getSources() {
+        synchronized (this.sources) {
+            return new LinkedHashSet<>(this.sources);
+        }
     }
 
     protected Properties load(InputStream in, Type type) {
+        return load(in, type, null);
+    }
+
+    /**
+     * @param loaded The loaded includes, null to add their sources to this handler
+     */
+    private Properties load(InputStream in, Type type, List<ParseCache.Entry> loaded) {
+        return load(new InputStreamReader(in, StandardCharsets.UTF_8), type, loaded);
+    }
+
+    /**
+     * @param reader The characters of the resource, the parsers read it in blocks
+     */
+    private Properties load(Reader reader, Type type, List<ParseCache.Entry> loaded) {
         try {
             Properties properties = new Properties();
-            switch(type) {
-            case HOCON:
-                parseConf(new BufferedReader(new InputStreamReader(in, "UTF-8")), properties);
-                break;
-            case JSON:
-                parseJson(new BufferedReader(new InputStreamReader(in, "UTF-8")), properties);
-                break;
-            case YAML:
-                parseYaml(new BufferedReader(new InputStreamReader(in, "UTF-8")), properties);
-                break;
-            case PROPERTIES:
-                properties.load(new InputStreamReader(in, "UTF-8"));
-                break;
-            }
+            PropertiesEvents events = new PropertiesEvents(properties, loaded);
+            parse(reader, type, events);
+            events.merge();
             if (listener != null) {
             	listener.parsed(type.name(), resource, properties.size());
             }
@@ -156,16 +510,139 @@ public final class ConfigurationHandler implements ContextHandler {
         }
     }
 
-    private void include(String href, Deque<String> parents, Properties properties) {
-        String res;
-        URL url;
-        final StringBuffer parentKey = new StringBuffer();
-        parents.stream()
-               .forEach(p -> parentKey.insert(0, ".").insert(0, p));
+    /**
+     * Push the entries of the resource to the handler.
+     */
+    private void parse(Reader reader, Type type, ConfigEventHandler events) throws IOException {
+        switch(type) {
+        case HOCON:
+            parseConf(reader, events);
+            break;
+        case JSON:
+            parseJson(reader, events);
+            break;
+        case YAML:
+            parseYaml(reader, events);
+            break;
+        case PROPERTIES:
+            parseProperties(reader, events);
+            break;
+        }
+    }
+
+    /**
+     * Collects the entries into the properties, the includes are loaded on the
+     * include pool while parsing and merged at the end.
+     */
+    private final class PropertiesEvents implements ConfigEventHandler {
+        private final Properties properties;
+        private final List<ParseCache.Entry> loaded;
+        private List<Include> includes = null;
+        /** The properties or the values after the last include */
+        private Properties values;
+
+        PropertiesEvents(Properties properties, List<ParseCache.Entry> loaded) {
+            this.properties = properties;
+            this.loaded = loaded;
+            this.values = properties;
+        }
+
+        @Override
+        public void onEntry(CharSequence key, CharSequence value) {
+            values.setProperty(key.toString(), value.toString());
+        }
+
+        @Override
+        public void onInclude(String href, CharSequence parentKey) {
+            CompletableFuture<ParseCache.Entry> future = include(href);
+            if (null != future) {
+                if (null == includes) {
+                    includes = new ArrayList<>();
+                }
+                Include include = new Include(future, parentKey.toString());
+                includes.add(include);
+                values = include.after;
+            }
+        }
+
+        void merge() {
+            if (null != includes) {
+                ConfigurationHandler.this.merge(properties, includes, loaded);
+            }
+        }
+    }
+
+    /**
+     * Pushes the entries of the includes to the handler at their directives.
+     */
+    private final class IncludeEvents implements ConfigEventHandler {
+        private final ConfigEventHandler events;
+        private final StringBuilder key = new StringBuilder();
+        int count = 0;
+
+        IncludeEvents(ConfigEventHandler events) {
+            this.events = events;
+        }
+
+        @Override
+        public void onEntry(CharSequence key, CharSequence value) {
+            count++;
+            events.onEntry(key, value);
+        }
+
+        @Override
+        public void onEnterObject(CharSequence key) {
+            events.onEnterObject(key);
+        }
+
+        @Override
+        public void onExitObject(CharSequence key) {
+            events.onExitObject(key);
+        }
+
+        @Override
+        public void onInclude(String href, CharSequence parentKey) {
+            events.onInclude(href, parentKey);
+            CompletableFuture<ParseCache.Entry> future = include(href);
+            if (null == future) {
+                return;
+            }
+            Properties prop = join(future).values;
+            for (String name : prop.stringPropertyNames()) {
+                key.setLength(0);
+                key.append(parentKey).append(name);
+                onEntry(key, prop.getProperty(name));
+            }
+        }
+    }
+
+    /**
+     * The values of an include and the parent values after it.
+     */
+    private static final class Include {
+        final CompletableFuture<ParseCache.Entry> values;
+        /** The parent keys of the include, like <code>'a.b.'</code> */
+        final String parentKey;
+        final Properties after = new Properties();
+
+        Include(CompletableFuture<ParseCache.Entry> values, String parentKey) {
+            this.values = values;
+            this.parentKey = parentKey;
+        }
+    }
+
+    /**
+     * Start loading the included resource on the include pool.
+     *
+     * @return The included values, null if the resource is unknown
+     */
+    private CompletableFuture<ParseCache.Entry> include(String href) {
+        final String res;
+        final URL url;
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
         try {
             if(href.startsWith("classpath")) {
                 res = href.substring(href.indexOf("(")+1, href.lastIndexOf(")"));
-                ClassLoader loader = Thread.currentThread().getContextClassLoader();
                 url = loader.getResource(res);
                 if (url == null) {
                     throw new RuntimeException("Not found " + res);
@@ -179,87 +656,124 @@ public final class ConfigurationHandler implements ContextHandler {
                 url = new URL(res);
             } else {
                 LOGGER.warning(String.format("Unknow resource '%1$s'", href));
-                return;
+                return null;
+            }
+        } catch(MalformedURLException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+        return loadAsync(url, guessType(res));
+    }
+
+    /**
+     * Start loading the resource on the include pool.
+     */
+    private CompletableFuture<ParseCache.Entry> loadAsync(URL url, Type type) {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return CompletableFuture.supplyAsync(() -> {
+            // The nested includes are resolved by the loader of the parser
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            try {
+                return loadResource(url, type);
+            } finally {
+                thread.setContextClassLoader(previous);
             }
-            Type type = guessType(res);
-            // Load included config values
-            Properties prop = load(url.openStream(), type);
-            if(parentKey.length() == 0) {
+        }, getIncludePool());
+    }
+
+    /**
+     * Merge the included values in declaration order, each include overrides the
+     * values before it and is overridden by the values after it.
+     */
+    private void merge(Properties properties, List<Include> includes, List<ParseCache.Entry> loaded) {
+        for (Include include : includes) {
+            ParseCache.Entry entry = join(include.values);
+            if (null != loaded) {
+                loaded.add(entry);
+            } else {
+                this.sources.addAll(entry.sources);
+            }
+            Properties prop = entry.values;
+            if(include.parentKey.length() == 0) {
                 properties.putAll(prop);
             } else {
                 // Set included config values into parent
                 Set<String> names = prop.stringPropertyNames();
                 for(String name : names) {
-                    properties.setProperty((parentKey + name), prop.getProperty(name));
+                    properties.setProperty((include.parentKey + name), prop.getProperty(name));
                 }
             }
-        } catch(IOException ex) {
-            throw new RuntimeException(ex.getMessage(), ex);
+            properties.putAll(include.after);
         }
     }
 
-    private void parseConf(Reader reader, Properties properties) throws IOException {
-        StreamTokenizer tokenizer = createStreamTokenizer(reader);
-        Deque<String> parents = new ArrayDeque<String>();
+    private static ParseCache.Entry join(CompletableFuture<ParseCache.Entry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    private void parseConf(Reader reader, ConfigEventHandler events) throws IOException {
+        final HoconLexer lexer = new HoconLexer(reader);
+        // The parent keys as 'a.b.', and the length before each parent
+        final StringBuilder path = new StringBuilder();
+        int[] parents = new int[16];
+        int depth = 0;
         int token = 0;
         boolean ref = false;
         boolean symbol = false;
         boolean commentout = false;
         boolean included = false;
-        String key = null;
-        StringBuilder buffer = new StringBuilder();
-        while ((token = tokenizer.nextToken()) != StreamTokenizer.TT_EOF) {
+        boolean keyed = false;
+        final StringBuilder key = new StringBuilder();
+        final StringBuilder buffer = new StringBuilder();
+        while ((token = lexer.next()) != HoconLexer.EOF) {
             switch (token) {
-            case StreamTokenizer.TT_EOL:
+            case HoconLexer.EOL:
                 if(buffer.length() > 0) {
                     if(included) {
-                        include(buffer.toString(), parents, properties);
-                        buffer.setLength(0);
-                        key = null;
-                    } else {
-                        properties.setProperty(key, buffer.toString());
-                        key = null;
+                        events.onInclude(buffer.toString().trim(), path);
+                    } else if(keyed) {
+                        events.onEntry(key, buffer);
                     }
+                    keyed = false;
                     buffer.setLength(0);
                 }
                 commentout = false;
                 included = false;
                 break;
-            case StreamTokenizer.TT_NUMBER:
-                // Never come here because disable parseNumbers
-                if(!commentout) {
-                    // Append value number
-                    buffer.append(tokenizer.nval);
-                }
-                break;
-            case StreamTokenizer.TT_WORD:
+            case HoconLexer.WORD:
                 if(!commentout) {
-                    if(buffer.length() == 0 && INCLUDE.equals(tokenizer.sval)) {
+                    if(buffer.length() == 0 && lexer.contentEquals(INCLUDE)) {
                         included = true;
                     } else if(included) {
                         // Append value word
-                        buffer.append(tokenizer.sval);
+                        lexer.appendTo(buffer);
                         buffer.append(" ");
                     } else {
-                        if(null == key) {
-                            key = tokenizer.sval;
+                        if(!keyed) {
+                            key.setLength(0);
+                            lexer.appendTo(key);
+                            keyed = true;
                         } else {
                             // Append value word
-                            buffer.append(tokenizer.sval);
+                            lexer.appendTo(buffer);
                         }
                     }
                 }
                 break;
             case QUOTE:
-                if(!commentout) {
-                    // Append value string
-                    buffer.append(tokenizer.sval);
-                }
-                break;
             case DOUBLE_QUOTE:
                 if(!commentout) {
                     // Append value string
-                    buffer.append(tokenizer.sval);
+                    lexer.appendTo(buffer);
                 }
                 break;
             case BRACKET_START:
@@ -269,12 +783,17 @@ public final class ConfigurationHandler implements ContextHandler {
                         // Append value character
                         buffer.append(BRACKET_START);
                     } else {
-                        if(buffer.length() > 0) {
-                            key = key.concat(buffer.toString());
+                        if (depth == parents.length) {
+                            parents = Arrays.copyOf(parents, depth * 2);
+                        }
+                        parents[depth++] = path.length();
+                        if(keyed) {
+                            path.append(key).append(buffer);
+                            events.onEnterObject(path);
+                            path.append('.');
                             buffer.setLength(0);
                         }
-                        parents.push(key);
-                        key = null;
+                        keyed = false;
                     }
                 }
                 break;
@@ -285,19 +804,21 @@ public final class ConfigurationHandler implements ContextHandler {
                         buffer.append(BRACKET_END);
                         symbol = false;
                         ref = false;
-                    } else {
-                        parents.pop();
+                    } else if(depth > 0) {
+                        final int length = parents[--depth];
+                        if (path.length() > length) {
+                            path.setLength(path.length() - 1);
+                            events.onExitObject(path);
+                        }
+                        path.setLength(length);
                     }
                 }
                 break;
             case COLON: // ':' or '='
             case EQUALS:
                 if(!commentout) {
-                    if(null != key) {
-                        final StringBuffer keyBuffer = new StringBuffer(key);
-                        parents.stream()
-                               .forEach(p -> keyBuffer.insert(0, ".").insert(0, p));
-                        key = keyBuffer.toString();
+                    if(keyed) {
+                        key.insert(0, path);
                     }
                 }
                 break;
@@ -306,7 +827,7 @@ public final class ConfigurationHandler implements ContextHandler {
                 break;
             case DOLLAR_SYMBOL:
                 if(!commentout) {
-                    if(null != key || included) {
+                    if(keyed || included) {
                         // Append value character
                         buffer.append(DOLLAR_SYMBOL);
                         symbol = true;
@@ -315,191 +836,26 @@ public final class ConfigurationHandler implements ContextHandler {
                 break;
             default:
                 if(!commentout) {
-                    if(null != key || included) {
-                        char cto = (char)tokenizer.ttype;
-                        // Append value character
-                        buffer.append(cto);
-                    }
-                }
-                break;
-            }
-        }
-    }
-
-    private void parseJson(Reader reader, Properties properties) throws IOException {
-        StreamTokenizer tokenizer = createStreamTokenizer(reader);
-        Deque<String> parents = new ArrayDeque<String>();
-        int token = 0;
-        boolean ref = false;
-        boolean symbol = false;
-        boolean commentout = false;
-        String key = null;
-        StringBuilder buffer = new StringBuilder();
-        while ((token = tokenizer.nextToken()) != StreamTokenizer.TT_EOF) {
-            switch (token) {
-            case StreamTokenizer.TT_EOL:
-                commentout = false;
-                if(buffer.length() > 0) {
-                    String value = buffer.toString().trim();
-                    if(value.endsWith(",")) { // ending is comma
-                        value = value.substring(0, value.length()-1);
-                    }
-                    final StringBuffer keyBuffer = new StringBuffer(key);
-                    parents.stream()
-                           .forEach(p -> keyBuffer.insert(0, ".").insert(0, p));
-                    //System.out.println(String.format("[#] %1$s - %2$s - %3$s", parents, key, keyBuffer.toString()));
-                    key = keyBuffer.toString();
-                    properties.setProperty(key, value);
-                    key = null;
-                    buffer.setLength(0);
-                }
-                break;
-            case StreamTokenizer.TT_NUMBER:
-                // Never come here because disable parseNumbers
-                if(!commentout && null != key) {
-                    // Append value number
-                    buffer.append(tokenizer.nval);
-                }
-                break;
-            case StreamTokenizer.TT_WORD:
-                if(!commentout) {
-                    if(null == key) {
-                        key = tokenizer.sval;
-                    } else {
-                        // Append value word
-                        buffer.append(tokenizer.sval);
-                    }
-                }
-                break;
-            case QUOTE:
-                if(!commentout) {
-                    // Append value string
-                    buffer.append(tokenizer.sval);
-                }
-                break;
-            case DOUBLE_QUOTE:
-                if(!commentout) {
-                    // Append value string
-                    buffer.append(tokenizer.sval);
-                }
-                break;
-            case BRACKET_START:
-                if(!commentout) {
-                    if(symbol) {
-                        ref = true;
+                    if(keyed || included) {
                         // Append value character
-                        buffer.append(BRACKET_START);
-                    } else {
-                        if(parents != null && null != key)
-                            parents.push(key);
+                        buffer.append((char)token);
                     }
                 }
                 break;
-            case BRACKET_END:
-                if(!commentout) {
-                    if(ref) {
-                        // Append value character
-                        buffer.append(BRACKET_END);
-                        symbol = false;
-                        ref = false;
-                    } else {
-                        if(parents != null && !parents.isEmpty())
-                            parents.pop();
-                    }
-                }
-                break;
-            case COLON: // ':' or '='
-                if(buffer.length() > 0) {
-                    key = buffer.toString();
-                    buffer.setLength(0);
-                }
-                break;
-            case COMMENT_EXCITE:
-                commentout = true;
-                break;
-            case DOLLAR_SYMBOL:
-                if(!commentout) {
-                    if(null != key) {
-                        // Append value character
-                        buffer.append(DOLLAR_SYMBOL);
-                        symbol = true;
-                    }
-                }
-                break;
-            default:
-                if(!commentout && null != key) {
-                    char cto = (char)tokenizer.ttype;
-                    // Append value character
-                    buffer.append(cto);
-                }
-                break;
             }
         }
     }
 
-    private void parseYaml(Reader reader, Properties properties) throws IOException {
-        String key = null;
-        String value = null;
-        int level = 0;
-        int lastBlanks = 0;
-        int blanks = 0;
-        StringBuffer prekey = new StringBuffer();
-
-        LineNumberReader lineReader = new LineNumberReader(reader);
-        String line;
-        while((line = lineReader.readLine()) != null) {
-            int pos = line.indexOf(COMMENT_EXCITE); //#
-            if(pos != -1) {
-                line = line.substring(0, pos);
-            }
-            if(line.length() == 0)
-                continue;
-            pos = line.indexOf(COLON); //:
-            if(pos == -1) {
-                //
-                LOGGER.warning(String.format("Illegal yaml format whitout colon, '%s'", line));
-                continue;
-            }
-
-            key = line.substring(0, pos);
-            value = line.substring(pos+1).trim();
-            blanks = getFirstBlanks(key);
-            if(blanks < lastBlanks) {
-                level = level - ((lastBlanks - blanks) / 2);
-                prekey = getPrekey(prekey, level);
-            }
-            if(blanks == 0) {
-                level = 0;
-                prekey.setLength(0);
-            }
-            if(value.isEmpty()) {
-                level++;
-                prekey.append(key.trim()).append(".");
-            } else {
-                key = prekey.toString().concat(key.trim());
-                properties.put(key, value);
-            }
-            lastBlanks = blanks;
-        }
+    private void parseJson(Reader reader, ConfigEventHandler events) throws IOException {
+        new FlatJsonParser(reader, events).parse();
     }
 
-    private int getFirstBlanks(String line) {
-        int len = line.length();
-        int i = 0;
-        while(line.charAt(i++) == ' ' && i < len);
-        return i - 1;
+    private void parseYaml(Reader reader, ConfigEventHandler events) throws IOException {
+        new YamlParser(reader, events).parse();
     }
 
-    private StringBuffer getPrekey(StringBuffer buffer, int level) {
-        char[] array = buffer.toString().toCharArray();
-        int c = 0;
-        int len = 0;
-        while(c < level) {
-            if(array[len++] == '.')
-                c++;
-        }
-        buffer.setLength(len);
-        return buffer;
+    private void parseProperties(Reader reader, ConfigEventHandler events) throws IOException {
+        new PropertiesParser(reader, events).parse();
     }
 
     @Override
@@ -0,0 +1,152 @@
+package net.tiny.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watch the files of a configuration and reload it on change.
+ *
+ * <p>
+ * The directories of the resource and its included files are watched by a
+ * {@link WatchService} on a daemon thread. When one of the files is changed,
+ * the handler reloads the configuration, see {@link ConfigurationHandler#reload()},
+ * then a new {@link Snapshot} of the resolved values is published.
+ * <p>
+ * <code>
+ * ConfigurationWatcher watcher = handler.watch();
+ * Snapshot snapshot = watcher.snapshot(); // Always the last values
+ * watcher.close();
+ * </code>
+ */
+public final class ConfigurationWatcher implements Closeable {
+
+    private static Logger LOGGER = Logger.getLogger(ConfigurationWatcher.class.getName());
+
+    /** Wait for the other events of one change, e.g. truncate and write */
+    private static final long QUIET_PERIOD = 50L;
+
+    private final ConfigurationHandler handler;
+    private final WatchService service;
+    private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+    private final Set<Path> files = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Snapshot> snapshot;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    ConfigurationWatcher(ConfigurationHandler handler) throws IOException {
+        this.handler = handler;
+        this.service = FileSystems.getDefault().newWatchService();
+        register(handler.getSources());
+        this.snapshot = new AtomicReference<>(handler.getConfiguration().freeze());
+        this.thread = new Thread(this::watch, "ConfigurationWatcher-" + hashCode());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return The resolved values of the last load
+     */
+    public Snapshot snapshot() {
+        return this.snapshot.get();
+    }
+
+    /**
+     * @return The watched files
+     */
+    public Set<Path> getFiles() {
+        return new HashSet<>(this.files);
+    }
+
+    private void register(Set<URL> sources) throws IOException {
+        for (URL url : sources) {
+            if (!"file".equals(url.getProtocol())) {
+                continue;
+            }
+            try {
+                Path file = Paths.get(url.toURI()).toAbsolutePath().normalize();
+                Path dir = file.getParent();
+                if (this.files.add(file) && !this.directories.containsKey(dir)) {
+                    this.directories.put(dir, dir.register(this.service,
+                            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+                }
+            } catch (URISyntaxException ex) {
+                LOGGER.warning(String.format("Can not watch '%s'. %s", url, ex.getMessage()));
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (running) {
+                WatchKey key = this.service.take();
+                boolean changed = changed(key);
+                if (changed) {
+                    // Merge the events of one change
+                    Thread.sleep(QUIET_PERIOD);
+                    while (null != (key = this.service.poll())) {
+                        changed(key);
+                    }
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ex) {
+            // Closed
+        }
+    }
+
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else if (this.files.contains(dir.resolve((Path) event.context()))) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    void reload() {
+        try {
+            Set<String> changed = this.handler.reload();
+            if (!changed.isEmpty()) {
+                this.snapshot.set(this.handler.getConfiguration().freeze());
+            }
+            // The includes may be changed
+            register(this.handler.getSources());
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, String.format("Reload '%s' failed. %s",
+                    this.handler.getResource(), ex.getMessage()), ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        this.service.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s#%d(%d files)", getClass().getSimpleName(), hashCode(), this.files.size());
+    }
+}
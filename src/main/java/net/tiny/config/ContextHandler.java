@@ -1,6 +1,7 @@
 package net.tiny.config;
 
 import java.io.InputStream;
+import java.util.Set;
 
 public interface ContextHandler {
 
@@ -8,6 +9,13 @@ public interface ContextHandler {
 		void created(Object bean, Class<?> beanClass);
 		void parsed(String type, String resource, int size);
 		void cached(String name, Object value, boolean config);
+		/**
+		 * Called after the resource has been reloaded.
+		 *
+		 * @param resource The reloaded resource
+		 * @param changed The added, modified and removed keys
+		 */
+		default void reloaded(String resource, Set<String> changed) {}
 	}
 
 	enum Type {
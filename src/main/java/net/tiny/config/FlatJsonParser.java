@@ -0,0 +1,394 @@
+package net.tiny.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.logging.Logger;
+
+/**
+ * Streaming parser of the JSON configuration into the flat keys.
+ *
+ * <p>
+ * The characters are scanned once from a <code>char[]</code> buffer, the values
+ * end at the delimiters and not at the line ends, so a minified JSON on a single
+ * line is parsed the same as a formatted one. The nested keys are kept in a single
+ * path which is truncated when an object ends.
+ * <ul>
+ * <li>An object is flattened to the dotted keys, <code>a.b.c = value</code></li>
+ * <li>An array of scalars is a list value, <code>a = [x,y,z]</code></li>
+ * <li>The objects and the arrays in an array are indexed, <code>a.0.name = x</code></li>
+ * </ul>
+ * As the former parser, the braces of the root object may be omitted, the names
+ * and the values may be unquoted, <code>${...}</code> is kept in the value, and
+ * <code>#</code>, <code>//</code> and <code>/* ... *&#47;</code> are comments.
+ * The entries are pushed to a {@link ConfigEventHandler}.
+ */
+final class FlatJsonParser {
+
+    private static Logger LOGGER = Logger.getLogger(FlatJsonParser.class.getName());
+
+    private final Reader reader;
+    private final ConfigEventHandler events;
+
+    private final char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    /** The key of the current value, as 'a.b.c' */
+    private final StringBuilder path = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+
+    FlatJsonParser(Reader reader, ConfigEventHandler events) {
+        this(reader, events, 8192);
+    }
+
+    FlatJsonParser(Reader reader, ConfigEventHandler events, int size) {
+        this.reader = reader;
+        this.events = events;
+        this.buffer = new char[Math.max(2, size)];
+    }
+
+    void parse() throws IOException {
+        members(true);
+    }
+
+    /**
+     * The members of an object until its closing brace.
+     *
+     * @param root true if the braces of the root object may be omitted
+     */
+    private void members(boolean root) throws IOException {
+        while (true) {
+            int c = skip(true);
+            if (c == -1) {
+                if (!root) {
+                    LOGGER.warning(String.format("Illegal json format unclosed object '%s'", path));
+                }
+                return;
+            }
+            position++;
+            if (c == '}') {
+                if (root) {
+                    continue;
+                }
+                return;
+            }
+            if (root && c == '{') {
+                continue;
+            }
+            if (root && c == '[') {
+                array();
+                continue;
+            }
+            final int base = path.length();
+            if (c == '"' || c == '\'') {
+                quoted(c, path);
+            } else {
+                position--;
+                name(path);
+                if (path.length() == base) {
+                    LOGGER.warning(String.format("Illegal json format unexpected '%c'", (char) c));
+                    position++;
+                    continue;
+                }
+            }
+            c = skip(false);
+            if (c == ':' || c == '=') {
+                position++;
+            } else if (c != '{') {
+                LOGGER.warning(String.format("Illegal json format without colon '%s'", path));
+                path.setLength(base);
+                continue;
+            }
+            value();
+            path.setLength(base);
+        }
+    }
+
+    /**
+     * The value of the current path.
+     */
+    private void value() throws IOException {
+        final int c = skip(false);
+        switch (c) {
+        case -1:
+            LOGGER.warning(String.format("Illegal json format without value '%s'", path));
+            break;
+        case '{':
+            position++;
+            final int base = path.length();
+            events.onEnterObject(path);
+            path.append('.');
+            members(false);
+            path.setLength(base);
+            events.onExitObject(path);
+            break;
+        case '[':
+            position++;
+            array();
+            break;
+        case '"':
+        case '\'':
+            position++;
+            value.setLength(0);
+            quoted(c, value);
+            events.onEntry(path, value);
+            break;
+        default:
+            value.setLength(0);
+            bare(value);
+            if (value.length() > 0) {
+                events.onEntry(path, value);
+            }
+            break;
+        }
+    }
+
+    /**
+     * The items of an array until its closing bracket.
+     */
+    private void array() throws IOException {
+        final int base = path.length();
+        StringBuilder list = null;
+        int index = 0;
+        boolean nested = false;
+        while (true) {
+            final int c = skip(true);
+            if (c == -1) {
+                LOGGER.warning(String.format("Illegal json format unclosed array '%s'", path));
+                break;
+            }
+            if (c == ']') {
+                position++;
+                break;
+            }
+            if (c == '}') {
+                LOGGER.warning(String.format("Illegal json format unclosed array '%s'", path));
+                break;
+            }
+            if (c == '{' || c == '[') {
+                if (base > 0) {
+                    path.append('.');
+                }
+                path.append(index);
+                value();
+                path.setLength(base);
+                nested = true;
+            } else {
+                if (null == list) {
+                    list = new StringBuilder().append('[');
+                } else {
+                    list.append(',');
+                }
+                if (c == '"' || c == '\'') {
+                    position++;
+                    quoted(c, list);
+                } else {
+                    bare(list);
+                }
+            }
+            index++;
+        }
+        if (base == 0) {
+            return;
+        }
+        if (null != list) {
+            events.onEntry(path, list.append(']'));
+        } else if (!nested) {
+            events.onEntry(path, "[]");
+        }
+    }
+
+    /**
+     * An unquoted name until the colon.
+     */
+    private void name(StringBuilder out) throws IOException {
+        int c;
+        while ((c = peek()) != -1 && c != ':' && c != '=' && c != '{' && c != '}' && c != ','
+                && c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+            out.append((char) c);
+            position++;
+        }
+    }
+
+    /**
+     * An unquoted value until a delimiter, a line end or a comment.
+     * A <code>${...}</code> reference is kept with its braces.
+     */
+    private void bare(StringBuilder out) throws IOException {
+        final int start = out.length();
+        int refs = 0;
+        int c;
+        while ((c = peek()) != -1) {
+            if (refs > 0) {
+                if (c == '}') {
+                    refs--;
+                } else if (c == '{') {
+                    refs++;
+                }
+            } else if (c == ',' || c == '}' || c == ']' || c == '\n' || c == '\r') {
+                break;
+            } else if ((c == '#' || c == '/') && (out.length() == start || out.charAt(out.length() - 1) == ' ')) {
+                if (c == '#' || isComment()) {
+                    break;
+                }
+            } else if (c == '$') {
+                position++;
+                out.append('$');
+                if (peek() == '{') {
+                    refs++;
+                    position++;
+                    out.append('{');
+                }
+                continue;
+            }
+            out.append((char) c);
+            position++;
+        }
+        int end = out.length();
+        while (end > start && (out.charAt(end - 1) == ' ' || out.charAt(end - 1) == '\t')) {
+            end--;
+        }
+        out.setLength(end);
+    }
+
+    /**
+     * A quoted text, the opening quote is read.
+     */
+    private void quoted(int quote, StringBuilder out) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != quote) {
+            if (c == '\n' || c == '\r') {
+                LOGGER.warning(String.format("Illegal json format unclosed quote '%s'", out));
+                position--;
+                return;
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                case -1: return;
+                case 'b': c = '\b'; break;
+                case 'f': c = '\f'; break;
+                case 'n': c = '\n'; break;
+                case 'r': c = '\r'; break;
+                case 't': c = '\t'; break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        code = (code << 4) + Character.digit(read(), 16);
+                    }
+                    c = code;
+                    break;
+                default: break;
+                }
+            }
+            out.append((char) c);
+        }
+    }
+
+    /**
+     * Skip the spaces, the line ends and the comments.
+     *
+     * @param commas true to skip the commas too
+     * @return The next character, or -1
+     */
+    private int skip(boolean commas) throws IOException {
+        int c;
+        while ((c = peek()) != -1) {
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\uFEFF' || (commas && c == ',')) {
+                position++;
+            } else if (c == '#' || (c == '/' && isComment())) {
+                if (c == '/' && peekNext() == '*') {
+                    // Block comment
+                    position += 2;
+                    int last = 0;
+                    while ((c = read()) != -1 && !(last == '*' && c == '/')) {
+                        last = c;
+                    }
+                } else {
+                    while ((c = peek()) != -1 && c != '\n' && c != '\r') {
+                        position++;
+                    }
+                }
+            } else {
+                break;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * @return true if the next characters are <code>//</code> or <code>/*</code>
+     */
+    private boolean isComment() throws IOException {
+        final int c = peekNext();
+        return c == '/' || c == '*';
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * @return The character after the next one, or -1
+     */
+    private int peekNext() throws IOException {
+        if (position + 1 >= limit) {
+            // Move the next character to the head
+            if (position < limit) {
+                buffer[0] = buffer[position];
+                limit = 1;
+            } else {
+                limit = 0;
+            }
+            position = 0;
+            while (!eof && limit < 2) {
+                final int n = reader.read(buffer, limit, buffer.length - limit);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    limit += n;
+                }
+            }
+            if (position + 1 >= limit) {
+                return -1;
+            }
+        }
+        return buffer[position + 1];
+    }
+
+    /**
+     * Read more characters, the last read character is kept at the head to step back.
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int keep = 0;
+        if (limit > 0) {
+            buffer[0] = buffer[limit - 1];
+            keep = 1;
+        }
+        int n;
+        do {
+            n = reader.read(buffer, keep, buffer.length - keep);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        position = keep;
+        limit = keep + n;
+        return true;
+    }
+}
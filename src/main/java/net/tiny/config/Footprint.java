@@ -0,0 +1,89 @@
+package net.tiny.config;
+
+import java.io.Serializable;
+
+/**
+ * Estimated memory footprint of a configuration store.
+ *
+ * <p>
+ * The sizes are estimated for a 64-bit JVM with compressed references and
+ * UTF-16 strings, they are meant to compare the storage modes, not to be exact.
+ * A shared object, e.g. a deduplicated value, is counted once.
+ * <p>
+ * @see Configuration#footprint()
+ */
+public final class Footprint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int HEADER = 12;
+    static final int REFERENCE = 4;
+    static final int ARRAY_HEADER = 16;
+
+    private final int entries;
+    private final long keys;
+    private final long values;
+    private final long index;
+
+    Footprint(int entries, long keys, long values, long index) {
+        this.entries = entries;
+        this.keys = keys;
+        this.values = values;
+        this.index = index;
+    }
+
+    /**
+     * @return The number of the stored keys
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return The bytes of the keys and the table of the store
+     */
+    public long getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return The bytes of the distinct values
+     */
+    public long getValues() {
+        return values;
+    }
+
+    /**
+     * @return The bytes of the key index
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    public long getTotal() {
+        return keys + values + index;
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7L) & ~7L;
+    }
+
+    static long object(int fields) {
+        return align(HEADER + fields);
+    }
+
+    static long array(int length, int width) {
+        return align(ARRAY_HEADER + (long) length * width);
+    }
+
+    static long string(String value) {
+        // value, hash and coder fields, the chars
+        return object(REFERENCE + 4 + 1) + array(value.length(), 2);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Footprint(%d entries) keys:%,dB values:%,dB index:%,dB total:%,dB",
+                entries, keys, values, index, getTotal());
+    }
+}
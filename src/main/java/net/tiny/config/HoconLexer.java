@@ -0,0 +1,231 @@
+package net.tiny.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Single pass lexer of the HOCON configuration.
+ *
+ * <p>
+ * The characters are read into a <code>char[]</code> buffer and a token is a slice
+ * of the buffer, no string is created for a word or a quoted text.
+ * The token rules are the same as the <code>StreamTokenizer</code> of
+ * {@link ConfigurationHandler#createStreamTokenizer(Reader)}:
+ * <ul>
+ * <li>A word is a run of <code>[0-9A-Za-z_]</code> and the characters over <code>0xFF</code></li>
+ * <li>A quoted text ends at the same quote or the line end, the escapes are replaced</li>
+ * <li>A line comment starts with <code>'//'</code>, the line end is kept</li>
+ * <li>The spaces and the tabs are skipped, the other characters are single tokens</li>
+ * </ul>
+ * <p>
+ * The slice of a token is only valid until the next token.
+ */
+final class HoconLexer {
+
+    static final int EOF  = -1;
+    static final int EOL  = -2;
+    static final int WORD = -3;
+
+    private final Reader reader;
+    private char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    /** The start of the current token in the buffer, kept on refill */
+    private int mark = -1;
+    private boolean eof = false;
+
+    /** The unescaped text of a quoted token */
+    private char[] text = new char[64];
+    private char[] chars;
+    private int start;
+    private int length;
+
+    HoconLexer(Reader reader) {
+        this(reader, 8192);
+    }
+
+    HoconLexer(Reader reader, int size) {
+        this.reader = reader;
+        this.buffer = new char[size];
+    }
+
+    /**
+     * @return The token type, {@link #WORD}, {@link #EOL}, {@link #EOF},
+     * the quote character of a quoted text, or the character itself
+     */
+    int next() throws IOException {
+        while (true) {
+            int c = read();
+            switch (c) {
+            case -1:
+                return EOF;
+            case ' ':
+            case '\t':
+                break;
+            case '\r':
+                if (peek() == '\n') {
+                    position++;
+                }
+                return EOL;
+            case '\n':
+                return EOL;
+            case '\'':
+            case '"':
+                quoted(c);
+                return c;
+            case '/':
+                if (peek() == '/') {
+                    // Skip the comment, the line end is a token
+                    while ((c = peek()) != -1 && c != '\n' && c != '\r') {
+                        position++;
+                    }
+                    break;
+                }
+                return c;
+            default:
+                if (isWord(c)) {
+                    word();
+                    return WORD;
+                }
+                return c;
+            }
+        }
+    }
+
+    char[] chars() {
+        return chars;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int length() {
+        return length;
+    }
+
+    void appendTo(StringBuilder builder) {
+        builder.append(chars, start, length);
+    }
+
+    boolean contentEquals(String value) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isWord(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c > 0xff;
+    }
+
+    private void word() throws IOException {
+        mark = position - 1;
+        int c;
+        while ((c = peek()) != -1 && isWord(c)) {
+            position++;
+        }
+        chars = buffer;
+        start = mark;
+        length = position - mark;
+        mark = -1;
+    }
+
+    private void quoted(int quote) throws IOException {
+        int count = 0;
+        int d = read();
+        while (d != -1 && d != quote && d != '\n' && d != '\r') {
+            int c;
+            if (d == '\\') {
+                c = read();
+                int first = c;
+                if (c >= '0' && c <= '7') {
+                    // Octal escape, up to '\377'
+                    c = c - '0';
+                    int c2 = peek();
+                    if (c2 >= '0' && c2 <= '7') {
+                        position++;
+                        c = (c << 3) + (c2 - '0');
+                        c2 = peek();
+                        if (c2 >= '0' && c2 <= '7' && first <= '3') {
+                            position++;
+                            c = (c << 3) + (c2 - '0');
+                        }
+                    }
+                } else {
+                    switch (c) {
+                    case 'a': c = 0x7; break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = 0xC; break;
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'v': c = 0xB; break;
+                    default: break;
+                    }
+                }
+            } else {
+                c = d;
+            }
+            if (count == text.length) {
+                text = Arrays.copyOf(text, count * 2);
+            }
+            text[count++] = (char) c;
+            d = read();
+        }
+        if (d == '\n' || d == '\r') {
+            // Keep the line end
+            position--;
+        }
+        chars = text;
+        start = 0;
+        length = count;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Read more characters, the current token from the mark is moved to the head.
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int keep = (mark < 0) ? 0 : position - mark;
+        if (keep > 0) {
+            if (keep == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            System.arraycopy(buffer, mark, buffer, 0, keep);
+            mark = 0;
+        }
+        position = keep;
+        limit = keep;
+        int n = reader.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+}
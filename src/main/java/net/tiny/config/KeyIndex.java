@@ -0,0 +1,336 @@
+package net.tiny.config;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Trie of dotted property key segments.
+ *
+ * <p>
+ * The index mirrors the string keys of a {@link Configuration} so that a subtree
+ * ('app.sample.') can be enumerated or tested in O(depth + matches) instead of
+ * scanning every key of the configuration.
+ * A prefix is always given with its trailing dot, the same as <code>key.startsWith(prefix)</code>.
+ * <p>
+ * Reads are lock free, updates are serialized on the index.
+ * <p>
+ * With a {@link SegmentTable} the segments are interned and the full keys are not
+ * kept on the nodes, they are built again when visited.
+ */
+final class KeyIndex {
+
+    static final char SEPARATOR = '.';
+
+    static final class Node {
+        final String segment;
+        final Node parent;
+        volatile Map<String, Node> children;
+        /** The full key when a key terminates on this node, not kept with a segment table */
+        volatile String key;
+        volatile boolean terminal;
+
+        Node(String segment, Node parent) {
+            this.segment = segment;
+            this.parent = parent;
+        }
+
+        Node child(String name) {
+            Map<String, Node> map = children;
+            return (map == null) ? null : map.get(name);
+        }
+
+        boolean isEmpty() {
+            Map<String, Node> map = children;
+            return !terminal && (map == null || map.isEmpty());
+        }
+    }
+
+    private final Node root = new Node("", null);
+    private final SegmentTable segments;
+    private volatile int size = 0;
+
+    KeyIndex() {
+        this(null, Collections.emptySet());
+    }
+
+    KeyIndex(Collection<String> keys) {
+        this(null, keys);
+    }
+
+    KeyIndex(SegmentTable segments, Collection<String> keys) {
+        this.segments = segments;
+        for (String key : keys) {
+            add(key);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(String key) {
+        Node node = find(key, key.length());
+        return node != null && node.terminal;
+    }
+
+    synchronized void add(String key) {
+        Node node = root;
+        int start = 0;
+        int end;
+        do {
+            end = key.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = key.length();
+            }
+            String segment = (segments == null)
+                    ? key.substring(start, end) : segments.segment(segments.intern(key, start, end));
+            Node next = node.child(segment);
+            if (next == null) {
+                if (node.children == null) {
+                    node.children = new ConcurrentHashMap<>(4);
+                }
+                next = new Node(segment, node);
+                node.children.put(segment, next);
+            }
+            node = next;
+            start = end + 1;
+        } while (end < key.length());
+        if (!node.terminal) {
+            if (segments == null) {
+                node.key = key;
+            }
+            node.terminal = true;
+            size++;
+        }
+    }
+
+    synchronized void remove(String key) {
+        Node node = find(key, key.length());
+        if (node == null || !node.terminal) {
+            return;
+        }
+        node.terminal = false;
+        node.key = null;
+        size--;
+        // Prune branches without any key
+        while (node.parent != null && node.isEmpty()) {
+            node.parent.children.remove(node.segment);
+            node = node.parent;
+        }
+    }
+
+    synchronized void clear() {
+        root.children = null;
+        size = 0;
+    }
+
+    /**
+     * Whether any key starts with the prefix.
+     *
+     * @param prefix The key prefix ending with '.'
+     * @return true if the subtree has a key
+     */
+    boolean hasPrefix(String prefix) {
+        Node node = findPrefix(prefix);
+        if (node == null) {
+            return false;
+        }
+        Map<String, Node> map = node.children;
+        return map != null && !map.isEmpty();
+    }
+
+    /**
+     * Visit all keys starting with the prefix.
+     *
+     * @param prefix The key prefix ending with '.'
+     * @param action The key consumer
+     */
+    void forEach(String prefix, Consumer<String> action) {
+        Node node = findPrefix(prefix);
+        if (node != null) {
+            visitChildren(node, (segments == null) ? null : new StringBuilder(prefix), action);
+        }
+    }
+
+    Stream<String> stream(String prefix) {
+        Stream.Builder<String> builder = Stream.builder();
+        forEach(prefix, builder);
+        return builder.build();
+    }
+
+    /**
+     * A cursor of the keys starting with the prefix, in depth first order.
+     * The key of a cursor is only valid until the next move.
+     *
+     * @param prefix The key prefix ending with '.', or empty for all keys
+     * @return The cursor before the first key
+     */
+    Cursor cursor(String prefix) {
+        return new Cursor(prefix);
+    }
+
+    final class Cursor {
+        private final StringBuilder path;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Iterator<Node>[] stack = new Iterator[8];
+        private int[] lengths = new int[8];
+        private int depth = 0;
+        private Node pending;
+        private CharSequence key;
+
+        private Cursor(String prefix) {
+            this.path = (segments == null) ? null : new StringBuilder(64).append(prefix);
+            Node node = prefix.isEmpty() ? root : findPrefix(prefix);
+            if (node != null) {
+                push(node);
+            }
+        }
+
+        /**
+         * @return true if moved to the next key
+         */
+        boolean next() {
+            while (true) {
+                if (pending != null) {
+                    // Visit the children of the last node first
+                    if (path != null) {
+                        path.append(SEPARATOR);
+                    }
+                    push(pending);
+                    pending = null;
+                }
+                if (depth == 0) {
+                    break;
+                }
+                Iterator<Node> it = stack[depth - 1];
+                if (!it.hasNext()) {
+                    stack[--depth] = null;
+                    continue;
+                }
+                Node child = it.next();
+                if (path != null) {
+                    path.setLength(lengths[depth - 1]);
+                    path.append(child.segment);
+                }
+                pending = child;
+                if (child.terminal) {
+                    key = (path == null) ? child.key : path;
+                    if (key != null) {
+                        return true;
+                    }
+                }
+            }
+            key = null;
+            return false;
+        }
+
+        /**
+         * @return The full key, a shared buffer with a segment table
+         */
+        CharSequence key() {
+            return key;
+        }
+
+        private void push(Node node) {
+            Map<String, Node> map = node.children;
+            if (map == null || map.isEmpty()) {
+                return;
+            }
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+                lengths = Arrays.copyOf(lengths, depth * 2);
+            }
+            lengths[depth] = (path == null) ? 0 : path.length();
+            stack[depth++] = map.values().iterator();
+        }
+    }
+
+    private Node findPrefix(String prefix) {
+        int len = prefix.length();
+        if (len == 0 || prefix.charAt(len - 1) != SEPARATOR) {
+            throw new IllegalArgumentException(
+                    String.format("The key prefix '%s' must be end with '%s'.", prefix, SEPARATOR));
+        }
+        return find(prefix, len - 1);
+    }
+
+    static int indexOf(CharSequence key, int from) {
+        for (int i = from; i < key.length(); i++) {
+            if (key.charAt(i) == SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Node find(String key, int length) {
+        Node node = root;
+        int start = 0;
+        int end;
+        do {
+            end = key.indexOf(SEPARATOR, start);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            node = node.child(key.substring(start, end));
+            start = end + 1;
+        } while (node != null && end < length);
+        return node;
+    }
+
+    private static void visitChildren(Node node, StringBuilder path, Consumer<String> action) {
+        Map<String, Node> map = node.children;
+        if (map == null) {
+            return;
+        }
+        for (Node child : map.values()) {
+            if (path == null) {
+                String key = child.key;
+                if (key != null) {
+                    action.accept(key);
+                }
+                visitChildren(child, null, action);
+            } else {
+                int length = path.length();
+                path.append(child.segment);
+                if (child.terminal) {
+                    action.accept(path.toString());
+                }
+                path.append(SEPARATOR);
+                visitChildren(child, path, action);
+                path.setLength(length);
+            }
+        }
+    }
+
+    /**
+     * @return The estimated retained bytes of the nodes, the interned segments are not counted
+     */
+    long footprint() {
+        return footprint(root);
+    }
+
+    private long footprint(Node node) {
+        // segment, parent, children, key and terminal
+        long bytes = Footprint.object(4 * Footprint.REFERENCE + 1);
+        if (segments == null) {
+            bytes += Footprint.string(node.segment);
+        }
+        Map<String, Node> map = node.children;
+        if (map != null) {
+            int capacity = Integer.highestOneBit(Math.max(1, map.size() * 4 / 3) * 2 - 1);
+            // The map, its table and an entry per child
+            bytes += Footprint.object(64) + Footprint.array(capacity, Footprint.REFERENCE);
+            for (Node child : map.values()) {
+                bytes += Footprint.object(4 + 3 * Footprint.REFERENCE) + footprint(child);
+            }
+        }
+        return bytes;
+    }
+}
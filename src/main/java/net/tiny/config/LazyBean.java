@@ -0,0 +1,83 @@
+package net.tiny.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Proxy handler of a lazy bean.
+ *
+ * <p>
+ * A bean configured with <code>lazy = true</code> and referred by an interface
+ * type is injected as a {@link Proxy}. The real bean is created by the configuration
+ * on the first method call, then all calls are delegated to it.
+ * <code>equals</code> and <code>hashCode</code> are the identity of the proxy and do not create the bean.
+ * <p>
+ */
+final class LazyBean implements InvocationHandler {
+
+    private final Configuration configuration;
+    private final String key;
+    private final Class<?> type;
+    private volatile Object target;
+
+    private LazyBean(Configuration configuration, String key, Class<?> type) {
+        this.configuration = configuration;
+        this.key = key;
+        this.type = type;
+    }
+
+    static Object proxy(Configuration configuration, String key, Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        if (null == loader) {
+            loader = Thread.currentThread().getContextClassLoader();
+        }
+        return Proxy.newProxyInstance(loader, new Class<?>[] { type }, new LazyBean(configuration, key, type));
+    }
+
+    static boolean isLazy(Object bean) {
+        return null != bean && Proxy.isProxyClass(bean.getClass())
+                && Proxy.getInvocationHandler(bean) instanceof LazyBean;
+    }
+
+    Object target() {
+        Object bean = target;
+        if (null == bean) {
+            synchronized (this) {
+                bean = target;
+                if (null == bean) {
+                    bean = configuration.getAs(key, type);
+                    if (null == bean) {
+                        throw new IllegalStateException(
+                                String.format("Not found lazy bean ${%s} (%s) instance.", key, type.getSimpleName()));
+                    }
+                    target = bean;
+                }
+            }
+        }
+        return bean;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                Object bean = target;
+                return (null == bean) ? String.format("%s(lazy ${%s})", type.getSimpleName(), key) : bean.toString();
+            default:
+                break;
+            }
+        }
+        try {
+            return method.invoke(target(), args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package net.tiny.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the parsed resources, shared in the JVM.
+ *
+ * <p>
+ * An entry holds the parsed values of a resource with all its included resources
+ * and a stamp of each of them, taken before it was read. A local file or a file in
+ * a local jar is stamped by its modified time and length, so a cached entry is
+ * checked without reading. A remote resource is stamped by the digest of its content.
+ * A file modified within {@link #RACY_MILLIS} is never cached, a change in the same
+ * tick of the modified time could not be seen.
+ * The cached values are never modified.
+ * An entry is keyed by the URL and the base of its <code>file(...)</code> includes,
+ * which are resolved against the resource of the loading handler, not the URL.
+ * <p>
+ */
+final class ParseCache {
+
+    static final ParseCache SHARED = new ParseCache();
+
+    static final long RACY_MILLIS = 2000L;
+
+    static final class Entry {
+        final Properties values;
+        /** The resource and its included resources */
+        final List<URL> sources;
+        /** The stamp of each source, null if not to be cached */
+        final List<String> stamps;
+        /** The SHA-256 digest of each source taken before it was read, null if not taken */
+        final List<byte[]> digests;
+
+        Entry(Properties values, List<URL> sources, List<String> stamps, List<byte[]> digests) {
+            this.values = values;
+            this.sources = Collections.unmodifiableList(sources);
+            this.stamps = Collections.unmodifiableList(stamps);
+            this.digests = Collections.unmodifiableList(digests);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param base The base of the file includes
+     * @return The entry of the resource, null if not cached or changed
+     */
+    Entry get(URL url, String base) {
+        final String key = key(url, base);
+        final Entry entry = entries.get(key);
+        if (null == entry) {
+            return null;
+        }
+        if (!isValid(entry)) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    void put(URL url, String base, Entry entry) {
+        if (!entry.stamps.contains(null)) {
+            entries.put(key(url, base), entry);
+        }
+    }
+
+    private static String key(URL url, String base) {
+        // A URL has no line break
+        return url.toString() + '\n' + base;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    private static boolean isValid(Entry entry) {
+        for (int i = 0; i < entry.sources.size(); i++) {
+            final URL url = entry.sources.get(i);
+            try {
+                final String stamp = isLocal(url) ? modified(url) : digest(read(url));
+                if (!entry.stamps.get(i).equals(stamp)) {
+                    return false;
+                }
+            } catch (IOException ex) {
+                // A source has been removed
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the resource is a local file or in a local jar
+     */
+    static boolean isLocal(URL url) {
+        return null != file(url);
+    }
+
+    private static File file(URL url) {
+        try {
+            switch (url.getProtocol()) {
+            case "file":
+                return new File(url.toURI());
+            case "jar":
+                URLConnection connection = url.openConnection();
+                URL jar = ((JarURLConnection) connection).getJarFileURL();
+                return "file".equals(jar.getProtocol()) ? new File(jar.toURI()) : null;
+            default:
+                return null;
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The modified time and length of the local resource,
+     *         null if not found or modified just now
+     */
+    static String modified(URL url) {
+        final File file = file(url);
+        if (null == file || !file.exists()) {
+            return null;
+        }
+        final long modified = file.lastModified();
+        if (System.currentTimeMillis() - modified < RACY_MILLIS) {
+            return null;
+        }
+        return modified + "/" + file.length();
+    }
+
+    static byte[] read(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    static String digest(byte[] content) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package net.tiny.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streaming parser of the properties configuration.
+ *
+ * <p>
+ * The lines are scanned in a <code>char[]</code> buffer with the same rules as
+ * <code>Properties.load</code>:
+ * <ul>
+ * <li>The leading white spaces and the blank lines are skipped</li>
+ * <li>A line starting with <code>#</code> or <code>!</code> is a comment, never continued</li>
+ * <li>A line ending with an odd number of backslashes is continued on the next line,
+ * the leading white spaces of the next line are skipped</li>
+ * <li>The key ends at the first unescaped <code>=</code>, <code>:</code> or white space,
+ * the white spaces and one separator before the value are skipped</li>
+ * <li>The escapes <code>\t</code>, <code>\n</code>, <code>\r</code>, <code>\f</code>
+ * and <code>&#92;uxxxx</code> are converted, the backslash of any other char is dropped</li>
+ * </ul>
+ * A line without escapes is pushed as a view of the buffer, without copying.
+ * The entries are pushed to a {@link ConfigEventHandler}, there is no lock nor table.
+ */
+final class PropertiesParser {
+
+    private final Reader reader;
+    private final ConfigEventHandler events;
+
+    private char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    /** The start of the natural line in process, kept in the buffer on reading more */
+    private int mark = 0;
+    private boolean eof = false;
+    /** True if the logical line has a backslash */
+    private boolean escaped;
+
+    /** The logical line joined from the continuation lines */
+    private char[] line = new char[256];
+    /** The converted key and value */
+    private char[] converted = new char[256];
+    private final Chars key = new Chars();
+    private final Chars value = new Chars();
+
+    PropertiesParser(Reader reader, ConfigEventHandler events) {
+        this(reader, events, 8192);
+    }
+
+    PropertiesParser(Reader reader, ConfigEventHandler events, int size) {
+        this.reader = reader;
+        this.events = events;
+        this.buffer = new char[Math.max(1, size)];
+    }
+
+    /**
+     * @throws IllegalArgumentException if a <code>&#92;uxxxx</code> escape is malformed
+     */
+    void parse() throws IOException {
+        while (true) {
+            int c;
+            while ((c = peek()) == ' ' || c == '\t' || c == '\f' || c == '\r' || c == '\n') {
+                position++;
+            }
+            if (c == -1) {
+                return;
+            }
+            if (c == '#' || c == '!') {
+                // Comment
+                while ((c = peek()) != -1 && c != '\n' && c != '\r') {
+                    position++;
+                }
+                continue;
+            }
+            logicalLine();
+        }
+    }
+
+    private void logicalLine() throws IOException {
+        mark = position;
+        escaped = false;
+        if (!scan()) {
+            split(buffer, mark, position);
+            return;
+        }
+        // Join the continuation lines without their last backslash
+        int length = 0;
+        while (true) {
+            length = append(length, mark, position - 1);
+            mark = position;
+            if (position == limit && !more()) {
+                split(line, 0, length);
+                return;
+            }
+            final char end = buffer[position++];
+            if (position == limit && !more()) {
+                split(line, 0, length);
+                return;
+            }
+            if (end == '\r' && buffer[position] == '\n') {
+                position++;
+            }
+            int c;
+            while ((c = peek()) == ' ' || c == '\t' || c == '\f') {
+                position++;
+            }
+            if (c == -1 || c == '\n' || c == '\r') {
+                // A blank line ends the logical line
+                if (length > 0) {
+                    split(line, 0, length);
+                }
+                return;
+            }
+            if (length == 0 && (c == '#' || c == '!')) {
+                // Still on a new logical line, a comment
+                return;
+            }
+            mark = position;
+            if (!scan()) {
+                length = append(length, mark, position);
+                split(line, 0, length);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Scan the natural line from the mark to the line end or the end of the stream.
+     *
+     * @return true if the line ends with an odd number of backslashes
+     */
+    private boolean scan() throws IOException {
+        boolean backslash = false;
+        while (position < limit || more()) {
+            final char c = buffer[position];
+            if (c == '\n' || c == '\r') {
+                break;
+            }
+            if (c == '\\') {
+                backslash = !backslash;
+                escaped = true;
+            } else {
+                backslash = false;
+            }
+            position++;
+        }
+        return backslash;
+    }
+
+    private int append(int length, int start, int end) {
+        final int size = end - start;
+        if (length + size > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + size));
+        }
+        System.arraycopy(buffer, start, line, length, size);
+        return length + size;
+    }
+
+    /**
+     * Split the logical line into the key and the value, and push them.
+     */
+    private void split(char[] chars, int start, int end) {
+        int k = start;
+        int v = end;
+        boolean separator = false;
+        boolean backslash = false;
+        while (k < end) {
+            final char c = chars[k];
+            if ((c == '=' || c == ':') && !backslash) {
+                v = k + 1;
+                separator = true;
+                break;
+            } else if ((c == ' ' || c == '\t' || c == '\f') && !backslash) {
+                v = k + 1;
+                break;
+            }
+            backslash = (c == '\\') ? !backslash : false;
+            k++;
+        }
+        while (v < end) {
+            final char c = chars[v];
+            if (c != ' ' && c != '\t' && c != '\f') {
+                if (!separator && (c == '=' || c == ':')) {
+                    separator = true;
+                } else {
+                    break;
+                }
+            }
+            v++;
+        }
+        if (escaped) {
+            if (converted.length < end - start) {
+                converted = new char[Math.max(converted.length * 2, end - start)];
+            }
+            final int keyLength = convert(chars, start, k, 0);
+            final int valueLength = convert(chars, v, end, keyLength);
+            key.set(converted, 0, keyLength);
+            value.set(converted, keyLength, valueLength - keyLength);
+        } else {
+            key.set(chars, start, k - start);
+            value.set(chars, v, end - v);
+        }
+        events.onEntry(key, value);
+    }
+
+    /**
+     * Convert the escapes of <code>chars[start, end)</code> into the converted chars.
+     *
+     * @return The end of the converted chars
+     */
+    private int convert(char[] chars, int start, int end, int offset) {
+        int out = offset;
+        int i = start;
+        while (i < end) {
+            char c = chars[i++];
+            if (c == '\\') {
+                if (i == end) {
+                    break;
+                }
+                c = chars[i++];
+                switch (c) {
+                case 'u':
+                    if (i > end - 4) {
+                        throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                    }
+                    int code = 0;
+                    for (int n = 0; n < 4; n++) {
+                        final int digit = Character.digit(chars[i++], 16);
+                        if (digit < 0) {
+                            throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                        }
+                        code = (code << 4) + digit;
+                    }
+                    c = (char) code;
+                    break;
+                case 't': c = '\t'; break;
+                case 'r': c = '\r'; break;
+                case 'n': c = '\n'; break;
+                case 'f': c = '\f'; break;
+                default: break;
+                }
+            }
+            converted[out++] = c;
+        }
+        return out;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            mark = position;
+            if (!more()) {
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Read more characters, the chars from the mark are kept at the head of the buffer.
+     */
+    private boolean more() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (mark > 0) {
+            System.arraycopy(buffer, mark, buffer, 0, limit - mark);
+            position -= mark;
+            limit -= mark;
+            mark = 0;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int n;
+        do {
+            n = reader.read(buffer, limit, buffer.length - limit);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * A view of a range of chars.
+     */
+    private static final class Chars implements CharSequence {
+        private char[] chars;
+        private int offset;
+        private int length;
+
+        void set(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
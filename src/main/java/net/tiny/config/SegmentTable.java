@@ -0,0 +1,121 @@
+package net.tiny.config;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Interned key path segments.
+ *
+ * <p>
+ * Each distinct segment of the dotted keys (<code>'vcap'</code>, <code>'services'</code>...)
+ * is kept once and identified by an int id. A segment can be looked up by a range of
+ * a key without creating a sub string.
+ * <p>
+ */
+final class SegmentTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String[] segments = new String[16];
+    private int[] hashes = new int[16];
+    /** Open addressing slots of id + 1, 0 is empty */
+    private int[] slots = new int[32];
+    private int size = 0;
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized String segment(int id) {
+        return segments[id];
+    }
+
+    /**
+     * @return The id of the segment <code>key[start, end)</code>, -1 if not interned
+     */
+    synchronized int find(CharSequence key, int start, int end) {
+        final int h = hash(key, start, end);
+        final int mask = slots.length - 1;
+        int i = h & mask;
+        int slot;
+        while ((slot = slots[i]) != 0) {
+            if (hashes[slot - 1] == h && equals(segments[slot - 1], key, start, end)) {
+                return slot - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The id of the segment <code>key[start, end)</code>, interned if not found
+     */
+    synchronized int intern(CharSequence key, int start, int end) {
+        int id = find(key, start, end);
+        if (id >= 0) {
+            return id;
+        }
+        if (size == segments.length) {
+            segments = Arrays.copyOf(segments, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        id = size++;
+        segments[id] = key.subSequence(start, end).toString();
+        hashes[id] = hash(key, start, end);
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insert(id);
+        }
+        return id;
+    }
+
+    private void insert(int id) {
+        final int mask = slots.length - 1;
+        int i = hashes[id] & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = id + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = 0; id < size; id++) {
+            insert(id);
+        }
+    }
+
+    /**
+     * @return The estimated retained bytes of the segments and the table
+     */
+    synchronized long footprint() {
+        long bytes = Footprint.array(segments.length, Footprint.REFERENCE)
+                + Footprint.array(hashes.length, 4)
+                + Footprint.array(slots.length, 4);
+        for (int id = 0; id < size; id++) {
+            bytes += Footprint.string(segments[id]);
+        }
+        return bytes;
+    }
+
+    static int hash(CharSequence key, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(String segment, CharSequence key, int start, int end) {
+        if (segment.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (segment.charAt(i) != key.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
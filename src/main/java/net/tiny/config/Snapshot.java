@@ -0,0 +1,158 @@
+package net.tiny.config;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable, resolved view of a {@link Configuration}.
+ *
+ * <p>
+ * All values are resolved once by {@link Configuration#freeze()} and kept in
+ * array-backed open addressing tables. A snapshot is never modified after creation,
+ * so reads are wait-free and can be shared by any number of threads.
+ * <p>
+ */
+public final class Snapshot {
+
+    private final String[] keys;
+    private final String[] values;
+    private final int[] hashes;
+    private final int mask;
+    private final int size;
+    private final Converter converter;
+
+    Snapshot(String[] names, String[] resolved, Converter converter) {
+        // Keep the load factor under 0.5
+        int capacity = Integer.highestOneBit(Math.max(2, names.length) * 2 - 1) << 1;
+        this.keys = new String[capacity];
+        this.values = new String[capacity];
+        this.hashes = new int[capacity];
+        this.mask = capacity - 1;
+        this.converter = converter;
+        int count = 0;
+        for (int n = 0; n < names.length; n++) {
+            final int h = hash(names[n]);
+            int i = h & mask;
+            while (keys[i] != null && !(hashes[i] == h && keys[i].equals(names[n]))) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == null) {
+                count++;
+            }
+            keys[i] = names[n];
+            values[i] = resolved[n];
+            hashes[i] = h;
+        }
+        this.size = count;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int slot(String key) {
+        final int h = hash(key);
+        int i = h & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (hashes[i] == h && k.equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String key) {
+        return slot(key) >= 0;
+    }
+
+    public Set<String> getAllPropertyNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (key != null) {
+                names.add(key);
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    public String getString(String key) {
+        int i = slot(key);
+        return (i < 0) ? null : values[i];
+    }
+
+    public <T> T getValue(Class<T> classType, String key) {
+        String value = getString(key);
+        if (null == value) {
+            return null;
+        }
+        return this.converter.convert(value, classType);
+    }
+
+    public Integer getInteger(String key) {
+        return getValue(Integer.class, key);
+    }
+
+    public Long getLong(String key) {
+        return getValue(Long.class, key);
+    }
+
+    public Float getFloat(String key) {
+        return getValue(Float.class, key);
+    }
+
+    public Double getDouble(String key) {
+        return getValue(Double.class, key);
+    }
+
+    public Boolean getBoolean(String key) {
+        return getValue(Boolean.class, key);
+    }
+
+    public Date getDate(String key) {
+        return getValue(Date.class, key);
+    }
+
+    public LocalDate getLocalDate(String key) {
+        return getValue(LocalDate.class, key);
+    }
+
+    public LocalTime getLocalTime(String key) {
+        return getValue(LocalTime.class, key);
+    }
+
+    public LocalDateTime getLocalDateTime(String key) {
+        return getValue(LocalDateTime.class, key);
+    }
+
+    public BigInteger getBigInteger(String key) {
+        return getValue(BigInteger.class, key);
+    }
+
+    public BigDecimal getBigDecimal(String key) {
+        return getValue(BigDecimal.class, key);
+    }
+
+    public <T> List<T> getValueList(String key, Class<T> classType) {
+        return this.converter.convertList(getString(key), classType);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s#%d(%d)", getClass().getSimpleName(), hashCode(), size);
+    }
+}
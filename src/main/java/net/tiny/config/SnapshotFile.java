@@ -0,0 +1,396 @@
+package net.tiny.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Binary snapshot of the parsed values of a resource and its includes.
+ *
+ * <p>
+ * The file holds the flattened key space of a chain of resources, keyed by the
+ * SHA-256 digests of all the source contents, so an unchanged configuration is
+ * loaded without parsing. The chain is stored to be matched exactly.
+ * It is read through a memory mapped buffer, which is unmapped on {@link #close()}.
+ * An opened snapshot must be closed, and not be used after or while closing.
+ * <p>
+ * <pre>
+ * header  : magic, version, chain, sources, entries, strings, slots (int)
+ * chain   : url (string id)
+ * sources : url (string id), digest (32 bytes)
+ * entries : key (string id), value (string id)
+ * slots   : entry + 1, 0 is empty (int), open addressing by the key hash
+ * strings : offset (int), then length (int) and UTF-8 bytes
+ * </pre>
+ */
+final class SnapshotFile implements Closeable {
+
+    private static final int MAGIC = 0x54434647; // 'TCFG'
+    private static final int VERSION = 2;
+    private static final int HEADER = 7 * 4;
+    private static final int DIGEST = 32;
+
+    private ByteBuffer buffer;
+    private final int chain;
+    private final int sources;
+    private final int entries;
+    private final int slots;
+    private final int sourceStart;
+    private final int entryStart;
+    private final int slotStart;
+    private final int offsetStart;
+    private final int stringStart;
+
+    private SnapshotFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a configuration snapshot.");
+        }
+        this.chain = buffer.getInt(8);
+        this.sources = buffer.getInt(12);
+        this.entries = buffer.getInt(16);
+        final int strings = buffer.getInt(20);
+        this.slots = buffer.getInt(24);
+        this.sourceStart = HEADER + chain * 4;
+        this.entryStart = sourceStart + sources * (4 + DIGEST);
+        this.slotStart = entryStart + entries * 8;
+        this.offsetStart = slotStart + slots * 4;
+        this.stringStart = offsetStart + strings * 4;
+        if (stringStart > buffer.capacity()) {
+            throw new IOException("Broken configuration snapshot.");
+        }
+    }
+
+    /**
+     * Map a snapshot file.
+     *
+     * @param file The snapshot file
+     * @return The snapshot
+     * @throws IOException If the file can not be read or is not a snapshot
+     */
+    static SnapshotFile open(Path file) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        }
+        try {
+            return new SnapshotFile(buffer);
+        } catch (IOException ex) {
+            unmap(buffer);
+            throw ex;
+        }
+    }
+
+    /**
+     * Unmap the buffer of the snapshot.
+     */
+    @Override
+    public void close() {
+        if (null != buffer) {
+            ByteBuffer mapped = buffer;
+            buffer = null;
+            unmap(mapped);
+        }
+    }
+
+    private void checkOpen() {
+        if (null == buffer) {
+            throw new IllegalStateException("The snapshot is closed.");
+        }
+    }
+
+    int size() {
+        return entries;
+    }
+
+    /**
+     * @return The URLs of the chain of resources, from the lowest precedence
+     */
+    List<URL> getChain() throws MalformedURLException {
+        checkOpen();
+        List<URL> urls = new ArrayList<>(chain);
+        for (int i = 0; i < chain; i++) {
+            urls.add(new URL(string(buffer.getInt(HEADER + i * 4))));
+        }
+        return urls;
+    }
+
+    /**
+     * @return The URLs of the resource and its included files
+     */
+    List<URL> getSources() throws MalformedURLException {
+        checkOpen();
+        List<URL> urls = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            urls.add(new URL(string(buffer.getInt(sourceStart + i * (4 + DIGEST)))));
+        }
+        return urls;
+    }
+
+    /**
+     * @return true if the contents of all the sources are not changed
+     */
+    boolean isValid() {
+        checkOpen();
+        try {
+            byte[] expected = new byte[DIGEST];
+            for (int i = 0; i < sources; i++) {
+                int pos = sourceStart + i * (4 + DIGEST);
+                URL url = new URL(string(buffer.getInt(pos)));
+                for (int n = 0; n < DIGEST; n++) {
+                    expected[n] = buffer.get(pos + 4 + n);
+                }
+                if (!Arrays.equals(expected, digest(url))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            // A source has been removed
+            return false;
+        }
+    }
+
+    /**
+     * Look up a value by the hash index.
+     *
+     * @param key The full key
+     * @return The value, null if not found
+     */
+    String get(String key) {
+        checkOpen();
+        if (slots == 0) {
+            return null;
+        }
+        final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        final int mask = slots - 1;
+        int i = hash(key) & mask;
+        int slot;
+        while ((slot = buffer.getInt(slotStart + i * 4)) != 0) {
+            int entry = entryStart + (slot - 1) * 8;
+            if (matches(buffer.getInt(entry), bytes)) {
+                return string(buffer.getInt(entry + 4));
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return All the values
+     */
+    Properties load() {
+        checkOpen();
+        Properties properties = new Properties();
+        for (int i = 0; i < entries; i++) {
+            int entry = entryStart + i * 8;
+            properties.setProperty(string(buffer.getInt(entry)), string(buffer.getInt(entry + 4)));
+        }
+        return properties;
+    }
+
+    private String string(int id) {
+        int pos = stringStart + buffer.getInt(offsetStart + id * 4);
+        byte[] bytes = new byte[buffer.getInt(pos)];
+        for (int n = 0; n < bytes.length; n++) {
+            bytes[n] = buffer.get(pos + 4 + n);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean matches(int id, byte[] bytes) {
+        int pos = stringStart + buffer.getInt(offsetStart + id * 4);
+        if (buffer.getInt(pos) != bytes.length) {
+            return false;
+        }
+        for (int n = 0; n < bytes.length; n++) {
+            if (buffer.get(pos + 4 + n) != bytes[n]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the snapshot of the values. The file is replaced atomically.
+     * The digests must be taken before the sources are read, a source changed
+     * while parsing is then seen by the next {@link #isValid()}.
+     *
+     * @param file The snapshot file
+     * @param chain The chain of resources, from the lowest precedence
+     * @param sources The resources and their included files, with their SHA-256 digests
+     * @param properties The parsed values
+     * @throws IOException If the file can not be written
+     */
+    static void write(Path file, List<URL> chain, Map<URL, byte[]> sources, Properties properties)
+            throws IOException {
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<byte[]> strings = new ArrayList<>();
+        final List<byte[]> digests = new ArrayList<>();
+        final List<Integer> chainIds = new ArrayList<>();
+        for (URL url : chain) {
+            chainIds.add(intern(url.toString(), ids, strings));
+        }
+        final List<Integer> sourceIds = new ArrayList<>();
+        for (Map.Entry<URL, byte[]> source : sources.entrySet()) {
+            if (null == source.getValue() || source.getValue().length != DIGEST) {
+                throw new IllegalArgumentException("Not a SHA-256 digest of " + source.getKey());
+            }
+            sourceIds.add(intern(source.getKey().toString(), ids, strings));
+            digests.add(source.getValue());
+        }
+        final List<String> keys = new ArrayList<>(properties.stringPropertyNames());
+        final int[] entries = new int[keys.size() * 2];
+        for (int i = 0; i < keys.size(); i++) {
+            entries[i * 2] = intern(keys.get(i), ids, strings);
+            entries[i * 2 + 1] = intern(properties.getProperty(keys.get(i)), ids, strings);
+        }
+        // Load factor 0.5
+        final int slots = keys.isEmpty() ? 0 : Integer.highestOneBit(keys.size() * 4 - 1);
+        final int[] table = new int[slots];
+        for (int i = 0; i < keys.size(); i++) {
+            int n = hash(keys.get(i)) & (slots - 1);
+            while (table[n] != 0) {
+                n = (n + 1) & (slots - 1);
+            }
+            table[n] = i + 1;
+        }
+        int data = 0;
+        for (byte[] bytes : strings) {
+            data += 4 + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + chainIds.size() * 4 + sources.size() * (4 + DIGEST)
+                + entries.length * 4 + slots * 4 + strings.size() * 4 + data);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(chainIds.size()).putInt(sources.size()).putInt(keys.size())
+            .putInt(strings.size()).putInt(slots);
+        for (int id : chainIds) {
+            buffer.putInt(id);
+        }
+        for (int i = 0; i < sourceIds.size(); i++) {
+            buffer.putInt(sourceIds.get(i)).put(digests.get(i));
+        }
+        for (int id : entries) {
+            buffer.putInt(id);
+        }
+        for (int slot : table) {
+            buffer.putInt(slot);
+        }
+        int offset = 0;
+        for (byte[] bytes : strings) {
+            buffer.putInt(offset);
+            offset += 4 + bytes.length;
+        }
+        for (byte[] bytes : strings) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.flip();
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, List<byte[]> strings) {
+        Integer id = ids.get(value);
+        if (null == id) {
+            id = strings.size();
+            ids.put(value, id);
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return The SHA-256 digest of the content
+     */
+    static byte[] digest(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return The SHA-256 digest of the content
+     */
+    static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Release the mapping now, not when the buffer is collected.
+     * If the cleaner is not accessible, it is left to the garbage collector.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        try {
+            // Java 9 or later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (NoSuchMethodException ex) {
+            // Java 8
+            try {
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object clean = cleaner.invoke(buffer);
+                if (null != clean) {
+                    clean.getClass().getMethod("clean").invoke(clean);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Left to the garbage collector
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // Left to the garbage collector
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package net.tiny.config;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The key value store of a root {@link Configuration}.
+ *
+ * <p>
+ * The keys are the full dotted keys, the values are the raw strings or the
+ * cached objects (beans, sub configurations).
+ * @see PropertiesStore
+ * @see CompactStore
+ * <p>
+ */
+interface Store extends Serializable {
+
+    Object get(String key);
+
+    /**
+     * Get the value by a key of any char sequence, e.g. a reused buffer.
+     */
+    Object find(CharSequence key);
+
+    /**
+     * @return The string value, null if not found or not a string
+     */
+    String getProperty(String key);
+
+    Object put(String key, Object value);
+
+    Object remove(String key);
+
+    boolean remove(String key, Object value);
+
+    boolean containsKey(String key);
+
+    int size();
+
+    /**
+     * @return The keys of the string values
+     */
+    Set<String> stringPropertyNames();
+
+    void clear();
+
+    /**
+     * @return The monitor of the compound updates, e.g. a reload
+     */
+    Object lock();
+
+    /**
+     * @return A new index of the string keys
+     */
+    KeyIndex index();
+
+    Footprint footprint(KeyIndex index);
+
+    /**
+     * The default store, a live view of the given properties.
+     */
+    final class PropertiesStore implements Store {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Properties properties;
+
+        PropertiesStore(Properties properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public Object get(String key) {
+            return properties.get(key);
+        }
+
+        @Override
+        public Object find(CharSequence key) {
+            return properties.get(key.toString());
+        }
+
+        @Override
+        public String getProperty(String key) {
+            return properties.getProperty(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return properties.put(key, value);
+        }
+
+        @Override
+        public Object remove(String key) {
+            return properties.remove(key);
+        }
+
+        @Override
+        public boolean remove(String key, Object value) {
+            return properties.remove(key, value);
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return properties.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return properties.size();
+        }
+
+        @Override
+        public Set<String> stringPropertyNames() {
+            return properties.stringPropertyNames();
+        }
+
+        @Override
+        public void clear() {
+            properties.clear();
+        }
+
+        @Override
+        public Object lock() {
+            return properties;
+        }
+
+        @Override
+        public KeyIndex index() {
+            return new KeyIndex(properties.stringPropertyNames());
+        }
+
+        @Override
+        public Footprint footprint(KeyIndex index) {
+            final Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+            long keys = 0L;
+            long values = 0L;
+            int entries = 0;
+            synchronized (properties) {
+                for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+                    entries++;
+                    // A hash entry and its table slot
+                    keys += Footprint.object(4 + 3 * Footprint.REFERENCE) + Footprint.REFERENCE;
+                    if (entry.getKey() instanceof String) {
+                        keys += Footprint.string((String) entry.getKey());
+                    }
+                    if (entry.getValue() instanceof String && counted.add(entry.getValue())) {
+                        values += Footprint.string((String) entry.getValue());
+                    }
+                }
+            }
+            return new Footprint(entries, keys, values, index.footprint());
+        }
+    }
+}
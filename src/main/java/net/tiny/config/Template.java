@@ -0,0 +1,293 @@
+package net.tiny.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled property value with <code>${...}</code> variables.
+ *
+ * <p>
+ * A value is parsed once into literal, reference (<code>${a.b}</code>) and
+ * nested reference (<code>${${a.b}.c}</code>) segments, then evaluated without
+ * rescanning the replaced text. Cycles are detected by the chain of names being
+ * evaluated, see also {@link #findCycle(Map)} to check them before evaluation.
+ * <p>
+ */
+final class Template {
+
+    static final String START = "${";
+    static final char DOLLAR = '$';
+    static final char BRACKET_START = '{';
+    static final char BRACKET_END = '}';
+
+    private static final int LITERAL = 0;
+    private static final int REFERENCE = 1;
+    private static final int NESTED = 2;
+
+    private static final int VISITING = 1;
+    private static final int VISITED = 2;
+
+    /**
+     * Look up the raw property values referred by a template.
+     */
+    interface Resolver {
+        String lookup(String name);
+
+        default Template compile(String value) {
+            return Template.compile(value);
+        }
+    }
+
+    static final class Segment {
+        final int kind;
+        final String text;
+        final Template nested;
+
+        Segment(int kind, String text, Template nested) {
+            this.kind = kind;
+            this.text = text;
+            this.nested = nested;
+        }
+    }
+
+    private final Segment[] segments;
+
+    private Template(List<Segment> segments) {
+        this.segments = segments.toArray(new Segment[segments.size()]);
+    }
+
+    static Template compile(String value) {
+        List<Segment> segments = new ArrayList<>();
+        parse(value, 0, segments, false);
+        return new Template(segments);
+    }
+
+    /**
+     * @return The index after the closing '}' of a nested part, or -1 if it is not closed
+     */
+    private static int parse(String value, int start, List<Segment> segments, boolean nested) {
+        final int len = value.length();
+        int literal = start;
+        int i = start;
+        while (i < len) {
+            char c = value.charAt(i);
+            if (c == DOLLAR && i + 1 < len && value.charAt(i + 1) == BRACKET_START) {
+                List<Segment> inner = new ArrayList<>();
+                int next = parse(value, i + 2, inner, true);
+                if (next < 0) {
+                    // Not closed, the rest is a literal
+                    break;
+                }
+                addLiteral(segments, value, literal, i);
+                segments.add(reference(inner));
+                i = next;
+                literal = i;
+            } else if (c == BRACKET_END && nested) {
+                addLiteral(segments, value, literal, i);
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        if (nested) {
+            return -1;
+        }
+        addLiteral(segments, value, literal, len);
+        return len;
+    }
+
+    private static void addLiteral(List<Segment> segments, String value, int start, int end) {
+        if (end > start) {
+            segments.add(new Segment(LITERAL, value.substring(start, end), null));
+        }
+    }
+
+    private static Segment reference(List<Segment> inner) {
+        if (inner.isEmpty()) {
+            return new Segment(REFERENCE, "", null);
+        }
+        if (inner.size() == 1 && inner.get(0).kind == LITERAL) {
+            return new Segment(REFERENCE, inner.get(0).text, null);
+        }
+        return new Segment(NESTED, null, new Template(inner));
+    }
+
+    /**
+     * @return true if the template is one reference only, like <code>${a.b}</code>
+     */
+    boolean isReference() {
+        return segments.length == 1 && segments[0].kind != LITERAL;
+    }
+
+    boolean hasReferences() {
+        for (Segment segment : segments) {
+            if (segment.kind != LITERAL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolve the name of a single reference template.
+     *
+     * @param resolver The raw value resolver
+     * @return The name referred, or the evaluated value if it is not a single reference
+     */
+    String name(Resolver resolver) {
+        if (!isReference()) {
+            return evaluate(resolver);
+        }
+        Segment segment = segments[0];
+        if (segment.kind == REFERENCE) {
+            return segment.text;
+        }
+        return segment.nested.evaluate(resolver, new ArrayDeque<>());
+    }
+
+    String evaluate(Resolver resolver) {
+        return evaluate(resolver, new ArrayDeque<>());
+    }
+
+    private String evaluate(Resolver resolver, Deque<String> chain) {
+        if (segments.length == 1 && segments[0].kind == LITERAL) {
+            return segments[0].text;
+        }
+        StringBuilder buffer = new StringBuilder();
+        for (Segment segment : segments) {
+            String value;
+            switch (segment.kind) {
+            case REFERENCE:
+                value = resolve(segment.text, resolver, chain);
+                break;
+            case NESTED:
+                String name = segment.nested.evaluate(resolver, chain);
+                value = (null == name) ? null : resolve(name, resolver, chain);
+                break;
+            default:
+                value = segment.text;
+                break;
+            }
+            if (null == value) {
+                return null;
+            }
+            buffer.append(value);
+        }
+        return buffer.toString();
+    }
+
+    private static String resolve(String name, Resolver resolver, Deque<String> chain) {
+        String value = resolver.lookup(name);
+        if (null == value || value.indexOf(START) < 0) {
+            return value;
+        }
+        if (value.length() == name.length() + 3 && value.startsWith(START)
+                && value.startsWith(name, 2) && value.charAt(value.length() - 1) == BRACKET_END) {
+            throw new RuntimeException(
+                    String.format("The property value '%s' can not resue self name.", value));
+        }
+        if (chain.contains(name)) {
+            throw new RuntimeException(
+                    String.format("Can not cycle reference '%s'.", value));
+        }
+        chain.push(name);
+        try {
+            return resolver.compile(value).evaluate(resolver, chain);
+        } finally {
+            chain.pop();
+        }
+    }
+
+    /**
+     * Collect the names referred directly by this template.
+     * The name of a nested reference is included if it can be resolved.
+     *
+     * @param resolver The raw value resolver
+     * @return The referred names
+     */
+    Set<String> references(Resolver resolver) {
+        Set<String> names = new LinkedHashSet<>();
+        collect(resolver, names);
+        return names;
+    }
+
+    private void collect(Resolver resolver, Set<String> names) {
+        for (Segment segment : segments) {
+            if (segment.kind == REFERENCE) {
+                names.add(segment.text);
+            } else if (segment.kind == NESTED) {
+                segment.nested.collect(resolver, names);
+                try {
+                    String name = segment.nested.evaluate(resolver);
+                    if (null != name) {
+                        names.add(name);
+                    }
+                } catch (RuntimeException ex) {
+                    // The cycle is reported by the inner references
+                }
+            }
+        }
+    }
+
+    /**
+     * Find a reference cycle in a dependency graph.
+     *
+     * @param graph The names referred by each property name
+     * @return The names of a cycle path, the first name is repeated at the end.
+     *         Empty if the graph has no cycle.
+     */
+    static List<String> findCycle(Map<String, ? extends Collection<String>> graph) {
+        Map<String, Integer> states = new HashMap<>();
+        Deque<String> path = new ArrayDeque<>();
+        Deque<Iterator<String>> iterators = new ArrayDeque<>();
+        for (String start : graph.keySet()) {
+            if (states.containsKey(start)) {
+                continue;
+            }
+            states.put(start, VISITING);
+            path.addLast(start);
+            iterators.push(graph.get(start).iterator());
+            while (!iterators.isEmpty()) {
+                Iterator<String> it = iterators.peek();
+                if (!it.hasNext()) {
+                    iterators.pop();
+                    states.put(path.removeLast(), VISITED);
+                    continue;
+                }
+                String next = it.next();
+                Integer state = states.get(next);
+                if (null == state) {
+                    Collection<String> edges = graph.get(next);
+                    if (null == edges) {
+                        states.put(next, VISITED);
+                    } else {
+                        states.put(next, VISITING);
+                        path.addLast(next);
+                        iterators.push(edges.iterator());
+                    }
+                } else if (state.intValue() == VISITING) {
+                    List<String> cycle = new ArrayList<>();
+                    boolean found = false;
+                    for (String name : path) {
+                        found = found || name.equals(next);
+                        if (found) {
+                            cycle.add(name);
+                        }
+                    }
+                    cycle.add(next);
+                    return cycle;
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+}
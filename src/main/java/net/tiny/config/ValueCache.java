@@ -0,0 +1,106 @@
+package net.tiny.config;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of resolved property values.
+ *
+ * <p>
+ * Each cached value records the property names it was resolved from. When one of
+ * them is changed, all values depending on it are dropped.
+ * Unresolved (null) values are never cached.
+ * The converted primitive values are cached with the same invalidation,
+ * so reading a cached number or flag does not allocate.
+ * A value resolved while an invalidation was running is never kept, see {@link #stamp()}.
+ * <p>
+ */
+final class ValueCache {
+
+    /** A converted primitive value, a double is kept as its raw long bits */
+    static final class Primitive {
+        final Class<?> type;
+        final long bits;
+
+        Primitive(Class<?> type, long bits) {
+            this.type = type;
+            this.bits = bits;
+        }
+    }
+
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Primitive> primitives = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> dependents = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @return The stamp to be passed to {@link #put(String, String, Collection, long)}
+     */
+    long stamp() {
+        return version.get();
+    }
+
+    String get(String key) {
+        return values.get(key);
+    }
+
+    void put(String key, String value, Collection<String> references, long stamp) {
+        if (value == null) {
+            return;
+        }
+        for (String ref : references) {
+            dependents.computeIfAbsent(ref, k -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
+                      .add(key);
+        }
+        values.put(key, value);
+        if (version.get() != stamp) {
+            // An input has been changed while resolving
+            values.remove(key, value);
+        }
+    }
+
+    /**
+     * @param key The property name
+     * @param type The primitive type
+     * @return The cached value, or null if not cached as the type
+     */
+    Primitive getPrimitive(String key, Class<?> type) {
+        Primitive primitive = primitives.get(key);
+        return (primitive != null && primitive.type == type) ? primitive : null;
+    }
+
+    void putPrimitive(String key, Class<?> type, long bits, long stamp) {
+        Primitive primitive = new Primitive(type, bits);
+        primitives.put(key, primitive);
+        if (version.get() != stamp) {
+            primitives.remove(key, primitive);
+        }
+    }
+
+    void invalidate(String key) {
+        version.incrementAndGet();
+        values.remove(key);
+        primitives.remove(key);
+        Set<String> keys = dependents.remove(key);
+        if (keys != null) {
+            for (String dependent : keys) {
+                values.remove(dependent);
+                primitives.remove(dependent);
+            }
+        }
+    }
+
+    void clear() {
+        version.incrementAndGet();
+        values.clear();
+        primitives.clear();
+        dependents.clear();
+    }
+
+    int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,778 @@
+package net.tiny.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Streaming parser of the YAML configuration.
+ *
+ * <p>
+ * The lines are read into a <code>char[]</code> buffer and parsed in place.
+ * The nested mappings and sequences are kept in an indentation stack, each
+ * level holds its indent and the length of its key prefix in a single path,
+ * so a dedent only truncates the path.
+ * <ul>
+ * <li>A mapping is flattened to the dotted keys, <code>a.b.c = value</code></li>
+ * <li>The scalar items of a sequence are joined as a list value, <code>a = x, y, z</code></li>
+ * <li>The mapping items of a sequence are indexed, <code>a.0.name = x</code></li>
+ * <li>The flow collections <code>[x, y]</code> and <code>{k: v}</code> are flattened the same way</li>
+ * <li>The block scalars <code>|</code> and <code>&gt;</code> with the chomping indicators <code>-</code> and <code>+</code></li>
+ * <li>The quoted scalars are unquoted, the comments start with <code>#</code> after a space</li>
+ * </ul>
+ * The anchors, the aliases and the tags are not supported, they are kept in the value.
+ * The entries are pushed to a {@link ConfigEventHandler}.
+ */
+final class YamlParser {
+
+    private static Logger LOGGER = Logger.getLogger(YamlParser.class.getName());
+
+    private static final String LIST_SEPARATOR = ", ";
+
+    private final Reader reader;
+    private final ConfigEventHandler events;
+
+    private char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    /** The current line in the buffer, without the line end */
+    private int lineStart;
+    private int lineEnd;
+
+    /** The key prefix of the current level, as 'a.b.' */
+    private final StringBuilder path = new StringBuilder();
+    // The indentation stack, the indent is -1 until the first child line
+    private int depth = 0;
+    private int[] indents = new int[16];
+    private int[] owners = new int[16];
+    private int[] bases = new int[16];
+    private boolean[] sequences = new boolean[16];
+    private int[] counts = new int[16];
+    private StringBuilder[] items = new StringBuilder[16];
+    /** True if the level is a mapping with a key, pushed as an object */
+    private boolean[] objects = new boolean[16];
+
+    /** The key and the value of the last plain scalar, for the continuation lines */
+    private String lastKey = null;
+    private String lastValue = null;
+
+    // Block scalar
+    private boolean block = false;
+    private String blockKey;
+    private int blockParent;
+    private int blockIndent;
+    private boolean folded;
+    private char chomping;
+    private int blanks;
+    private boolean moreIndented;
+    private final StringBuilder text = new StringBuilder();
+
+    // Flow collection on several lines
+    private String flowKey = null;
+    private int flowDepth;
+    private final StringBuilder flow = new StringBuilder();
+
+    YamlParser(Reader reader, ConfigEventHandler events) {
+        this.reader = reader;
+        this.events = events;
+    }
+
+    void parse() throws IOException {
+        push(-1, -1, false);
+        boolean first = true;
+        while (readLine()) {
+            if (first) {
+                first = false;
+                if (lineEnd > lineStart && buffer[lineStart] == '\uFEFF') {
+                    lineStart++;
+                }
+            }
+            if (block && blockLine()) {
+                continue;
+            }
+            int s = lineStart;
+            while (s < lineEnd && buffer[s] == ' ') {
+                s++;
+            }
+            int e = stripComment(s, lineEnd);
+            if (null != flowKey) {
+                flowLine(s, e);
+                continue;
+            }
+            if (s == e) {
+                continue;
+            }
+            if (s == lineStart && e - s >= 3 && (startsWith(s, e, "---") || startsWith(s, e, "..."))
+                    && (e - s == 3 || buffer[s + 3] == ' ')) {
+                // Document marker
+                continue;
+            }
+            if (buffer[s] == '%' && s == lineStart) {
+                // Directive
+                continue;
+            }
+            line(s - lineStart, s, e);
+        }
+        if (block) {
+            endBlock();
+        }
+        if (null != flowKey) {
+            LOGGER.warning(String.format("Illegal yaml format unclosed flow collection of '%s'", flowKey));
+            flowKey = null;
+        }
+        while (depth > 0) {
+            pop();
+        }
+    }
+
+    /**
+     * @param indent The indent of the line
+     * @param s The start of the content
+     * @param e The end of the content, without the comment
+     */
+    private void line(int indent, int s, int e) {
+        final boolean dash = isDash(s, e);
+        // Close the levels
+        while (true) {
+            final int top = depth - 1;
+            if (indents[top] < 0) {
+                if (indent > owners[top]) {
+                    indents[top] = indent;
+                    sequences[top] = dash;
+                    if (!dash) {
+                        enterObject(top);
+                    }
+                    break;
+                }
+                if (indent == owners[top] && dash && top > 0 && !sequences[top - 1]) {
+                    // The sequence at the same indent of its key
+                    indents[top] = indent;
+                    sequences[top] = true;
+                    break;
+                }
+                pop();
+                continue;
+            }
+            if (indent < indents[top] || (sequences[top] && indent == indents[top] && !dash)) {
+                if (top == 0) {
+                    break;
+                }
+                pop();
+                continue;
+            }
+            break;
+        }
+        final int top = depth - 1;
+        if (indent > indents[top]) {
+            if (null != lastKey && !dash) {
+                // Continuation of a plain scalar
+                lastValue = lastValue + " " + new String(buffer, s, e - s);
+                events.onEntry(lastKey, lastValue);
+            } else {
+                LOGGER.warning(String.format("Illegal yaml format indentation, '%s'", new String(buffer, lineStart, e - lineStart)));
+            }
+            return;
+        }
+        if (dash) {
+            if (!sequences[top]) {
+                LOGGER.warning(String.format("Illegal yaml format sequence in mapping, '%s'", new String(buffer, lineStart, e - lineStart)));
+                return;
+            }
+            item(indent, s, e);
+        } else {
+            if (sequences[top]) {
+                LOGGER.warning(String.format("Illegal yaml format mapping in sequence, '%s'", new String(buffer, lineStart, e - lineStart)));
+                return;
+            }
+            entry(indent, s, e, true);
+        }
+    }
+
+    /**
+     * A sequence item, <code>- value</code>
+     */
+    private void item(int indent, int s, int e) {
+        final int top = depth - 1;
+        final int index = counts[top]++;
+        int c = s + 1;
+        while (c < e && buffer[c] == ' ') {
+            c++;
+        }
+        final int column = indent + (c - s);
+        lastKey = null;
+        if (c == e) {
+            // The nested collection on the next lines
+            path.append(index).append('.');
+            push(-1, indent, false);
+            return;
+        }
+        if (isDash(c, e)) {
+            path.append(index).append('.');
+            push(column, indent, true);
+            item(column, c, e);
+            return;
+        }
+        if (colon(c, e, false) >= 0) {
+            path.append(index).append('.');
+            push(column, indent, false);
+            enterObject(depth - 1);
+            entry(column, c, e, false);
+            return;
+        }
+        final char first = buffer[c];
+        if (first == '[' || first == '{') {
+            path.append(index);
+            final String key = path.toString();
+            path.setLength(bases[top]);
+            startFlow(key, c, e);
+        } else if (first == '|' || first == '>') {
+            startBlock(null, indent, c, e);
+        } else {
+            append(top, scalar(c, e));
+        }
+    }
+
+    /**
+     * A mapping entry, <code>key: value</code>
+     */
+    private void entry(int indent, int s, int e, boolean loose) {
+        final int colon = colon(s, e, loose);
+        if (colon < 0) {
+            LOGGER.warning(String.format("Illegal yaml format whitout colon, '%s'", new String(buffer, lineStart, e - lineStart)));
+            return;
+        }
+        int k = colon;
+        while (k > s && buffer[k - 1] == ' ') {
+            k--;
+        }
+        int v = colon + 1;
+        while (v < e && (buffer[v] == ' ' || buffer[v] == '\t')) {
+            v++;
+        }
+        final int base = path.length();
+        if (buffer[s] == '\'' || buffer[s] == '"') {
+            path.append(scalar(s, k));
+        } else {
+            path.append(buffer, s, k - s);
+        }
+        lastKey = null;
+        if (v == e) {
+            // The nested collection on the next lines
+            path.append('.');
+            push(-1, indent, false);
+            return;
+        }
+        final String key = path.toString();
+        path.setLength(base);
+        final char first = buffer[v];
+        if (first == '[' || first == '{') {
+            startFlow(key, v, e);
+        } else if (first == '|' || first == '>') {
+            startBlock(key, indent, v, e);
+        } else {
+            final String value = scalar(v, e);
+            events.onEntry(key, value);
+            if (first != '\'' && first != '"') {
+                lastKey = key;
+                lastValue = value;
+            }
+        }
+    }
+
+    private void push(int indent, int owner, boolean sequence) {
+        if (depth == indents.length) {
+            final int size = depth * 2;
+            indents = Arrays.copyOf(indents, size);
+            owners = Arrays.copyOf(owners, size);
+            bases = Arrays.copyOf(bases, size);
+            sequences = Arrays.copyOf(sequences, size);
+            counts = Arrays.copyOf(counts, size);
+            items = Arrays.copyOf(items, size);
+            objects = Arrays.copyOf(objects, size);
+        }
+        indents[depth] = indent;
+        owners[depth] = owner;
+        bases[depth] = path.length();
+        sequences[depth] = sequence;
+        counts[depth] = 0;
+        objects[depth] = false;
+        if (null != items[depth]) {
+            items[depth].setLength(0);
+        }
+        depth++;
+    }
+
+    private void pop() {
+        final int top = --depth;
+        if (null != items[top] && items[top].length() > 0 && bases[top] > 0) {
+            // The scalar items as a list value of the sequence key
+            events.onEntry(path.substring(0, bases[top] - 1), items[top]);
+            items[top].setLength(0);
+        }
+        if (objects[top]) {
+            events.onExitObject(path.substring(0, bases[top] - 1));
+        }
+        lastKey = null;
+        path.setLength(depth > 0 ? bases[depth - 1] : 0);
+    }
+
+    private void enterObject(int level) {
+        if (bases[level] > 0) {
+            objects[level] = true;
+            events.onEnterObject(path.substring(0, bases[level] - 1));
+        }
+    }
+
+    private void append(int level, String value) {
+        StringBuilder list = items[level];
+        if (null == list) {
+            list = new StringBuilder();
+            items[level] = list;
+        }
+        if (list.length() > 0) {
+            list.append(LIST_SEPARATOR);
+        }
+        list.append(value);
+    }
+
+    private void startBlock(String key, int parent, int s, int e) {
+        block = true;
+        blockKey = key;
+        blockParent = parent;
+        blockIndent = -1;
+        folded = buffer[s] == '>';
+        chomping = ' ';
+        for (int i = s + 1; i < e; i++) {
+            final char c = buffer[i];
+            if (c == '-' || c == '+') {
+                chomping = c;
+            } else if (c >= '1' && c <= '9') {
+                blockIndent = parent + (c - '0');
+            }
+        }
+        blanks = 0;
+        moreIndented = false;
+        text.setLength(0);
+    }
+
+    /**
+     * @return true if the line is a content of the block scalar
+     */
+    private boolean blockLine() {
+        int s = lineStart;
+        while (s < lineEnd && buffer[s] == ' ') {
+            s++;
+        }
+        final int indent = s - lineStart;
+        if (s == lineEnd) {
+            blanks++;
+            return true;
+        }
+        if (blockIndent < 0) {
+            if (indent <= blockParent) {
+                endBlock();
+                return false;
+            }
+            blockIndent = indent;
+        } else if (indent < blockIndent) {
+            endBlock();
+            return false;
+        }
+        final boolean more = indent > blockIndent || buffer[s] == '\t';
+        if (text.length() == 0) {
+            for (int i = 0; i < blanks; i++) {
+                text.append('\n');
+            }
+        } else if (!folded || more || moreIndented) {
+            for (int i = 0; i <= blanks; i++) {
+                text.append('\n');
+            }
+        } else if (blanks > 0) {
+            for (int i = 0; i < blanks; i++) {
+                text.append('\n');
+            }
+        } else {
+            text.append(' ');
+        }
+        text.append(buffer, lineStart + blockIndent, lineEnd - lineStart - blockIndent);
+        blanks = 0;
+        moreIndented = more;
+        return true;
+    }
+
+    private void endBlock() {
+        block = false;
+        switch (chomping) {
+        case '-':
+            break;
+        case '+':
+            for (int i = 0; i <= blanks; i++) {
+                text.append('\n');
+            }
+            break;
+        default:
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            break;
+        }
+        if (null != blockKey) {
+            events.onEntry(blockKey, text);
+        } else {
+            append(depth - 1, text.toString());
+        }
+        text.setLength(0);
+    }
+
+    private void startFlow(String key, int s, int e) {
+        flowKey = key;
+        flowDepth = 0;
+        flow.setLength(0);
+        flowLine(s, e);
+    }
+
+    private void flowLine(int s, int e) {
+        if (flow.length() > 0) {
+            flow.append(' ');
+        }
+        char quote = 0;
+        for (int i = s; i < e; i++) {
+            final char c = buffer[i];
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"') {
+                    i++;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '[' || c == '{') {
+                flowDepth++;
+            } else if (c == ']' || c == '}') {
+                flowDepth--;
+            }
+        }
+        flow.append(buffer, s, e - s);
+        if (flowDepth <= 0) {
+            final String key = flowKey;
+            flowKey = null;
+            new Flow(flow).value(key);
+        }
+    }
+
+    /**
+     * Flattens a flow collection.
+     */
+    private final class Flow {
+        final CharSequence chars;
+        int position = 0;
+
+        Flow(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        void value(String key) {
+            skip();
+            if (position >= chars.length()) {
+                return;
+            }
+            final char c = chars.charAt(position);
+            if (c == '[') {
+                position++;
+                sequence(key);
+            } else if (c == '{') {
+                position++;
+                events.onEnterObject(key);
+                mapping(key);
+                events.onExitObject(key);
+            } else {
+                final String value = scalar(",]}");
+                if (!value.isEmpty()) {
+                    events.onEntry(key, value);
+                }
+            }
+        }
+
+        private void sequence(String key) {
+            final StringBuilder list = new StringBuilder();
+            int index = 0;
+            while (true) {
+                skip();
+                if (position >= chars.length()) {
+                    break;
+                }
+                char c = chars.charAt(position);
+                if (c == ']') {
+                    position++;
+                    break;
+                }
+                if (c == '[' || c == '{') {
+                    value(key + "." + index);
+                } else {
+                    final String value = scalar(",]");
+                    if (list.length() > 0) {
+                        list.append(LIST_SEPARATOR);
+                    }
+                    list.append(value);
+                }
+                index++;
+                skip();
+                if (position < chars.length() && chars.charAt(position) == ',') {
+                    position++;
+                }
+            }
+            if (list.length() > 0) {
+                events.onEntry(key, list);
+            }
+        }
+
+        private void mapping(String key) {
+            while (true) {
+                skip();
+                if (position >= chars.length()) {
+                    break;
+                }
+                if (chars.charAt(position) == '}') {
+                    position++;
+                    break;
+                }
+                final String name = scalar(":,}");
+                if (position < chars.length() && chars.charAt(position) == ':') {
+                    position++;
+                    value(key + "." + name);
+                }
+                skip();
+                if (position < chars.length() && chars.charAt(position) == ',') {
+                    position++;
+                }
+            }
+        }
+
+        private String scalar(String ends) {
+            final int start = position;
+            final int length = chars.length();
+            if (position < length && (chars.charAt(position) == '"' || chars.charAt(position) == '\'')) {
+                final char quote = chars.charAt(position++);
+                while (position < length && chars.charAt(position) != quote) {
+                    if (chars.charAt(position) == '\\' && quote == '"') {
+                        position++;
+                    }
+                    position++;
+                }
+                if (position < length) {
+                    position++;
+                }
+                return unquote(chars, start, Math.min(position, length));
+            }
+            while (position < length && ends.indexOf(chars.charAt(position)) < 0) {
+                position++;
+            }
+            int end = position;
+            while (end > start && chars.charAt(end - 1) == ' ') {
+                end--;
+            }
+            return chars.subSequence(start, end).toString();
+        }
+
+        private void skip() {
+            while (position < chars.length() && chars.charAt(position) == ' ') {
+                position++;
+            }
+        }
+    }
+
+    private boolean isDash(int s, int e) {
+        return buffer[s] == '-' && (s + 1 == e || buffer[s + 1] == ' ');
+    }
+
+    private boolean startsWith(int s, int e, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer[s + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param loose true to accept the first colon not followed by a space, as <code>key:value</code>
+     * @return The position of the colon of a key, or -1
+     */
+    private int colon(int s, int e, boolean loose) {
+        int i = s;
+        final char first = buffer[s];
+        if (first == '\'' || first == '"') {
+            i++;
+            while (i < e && buffer[i] != first) {
+                if (buffer[i] == '\\' && first == '"') {
+                    i++;
+                }
+                i++;
+            }
+        } else if (first == '[' || first == '{') {
+            return -1;
+        }
+        int any = -1;
+        for (; i < e; i++) {
+            if (buffer[i] == ':') {
+                if (i + 1 == e || buffer[i + 1] == ' ' || buffer[i + 1] == '\t') {
+                    return i;
+                }
+                if (any < 0) {
+                    any = i;
+                }
+            }
+        }
+        return loose ? any : -1;
+    }
+
+    /**
+     * @return The end of the content without the comment and the trailing spaces
+     */
+    private int stripComment(int s, int e) {
+        char quote = 0;
+        for (int i = s; i < e; i++) {
+            final char c = buffer[i];
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"') {
+                    i++;
+                }
+            } else if (c == '#') {
+                if (i == s || buffer[i - 1] == ' ' || buffer[i - 1] == '\t') {
+                    e = i;
+                    break;
+                }
+            } else if ((c == '\'' || c == '"') && (i == s || " \t[{,:".indexOf(buffer[i - 1]) >= 0)) {
+                quote = c;
+            }
+        }
+        while (e > s && (buffer[e - 1] == ' ' || buffer[e - 1] == '\t')) {
+            e--;
+        }
+        return e;
+    }
+
+    private String scalar(int s, int e) {
+        final char first = buffer[s];
+        if (first == '\'' || first == '"') {
+            return unquote(new Slice(buffer, s, e), 0, e - s);
+        }
+        return new String(buffer, s, e - s);
+    }
+
+    private static String unquote(CharSequence chars, int s, int e) {
+        final char quote = chars.charAt(s);
+        final StringBuilder value = new StringBuilder(e - s);
+        for (int i = s + 1; i < e; i++) {
+            char c = chars.charAt(i);
+            if (c == quote) {
+                if (quote == '\'' && i + 1 < e && chars.charAt(i + 1) == '\'') {
+                    // '' in a single quoted
+                    value.append(c);
+                    i++;
+                    continue;
+                }
+                break;
+            }
+            if (c == '\\' && quote == '"' && i + 1 < e) {
+                c = chars.charAt(++i);
+                switch (c) {
+                case 'n': c = '\n'; break;
+                case 't': c = '\t'; break;
+                case 'r': c = '\r'; break;
+                case '0': c = '\0'; break;
+                case 'u':
+                    if (i + 4 < e) {
+                        c = (char) Integer.parseInt(chars.subSequence(i + 1, i + 5).toString(), 16);
+                        i += 4;
+                    }
+                    break;
+                default: break;
+                }
+            }
+            value.append(c);
+        }
+        return value.toString();
+    }
+
+    /**
+     * A range of the buffer.
+     */
+    private static final class Slice implements CharSequence {
+        final char[] chars;
+        final int start;
+        final int end;
+
+        Slice(char[] chars, int start, int end) {
+            this.chars = chars;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new String(chars, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
+        }
+    }
+
+    /**
+     * Read the next line into the buffer, the previous line is discarded.
+     */
+    private boolean readLine() throws IOException {
+        int i = position;
+        while (true) {
+            while (i < limit) {
+                if (buffer[i] == '\n') {
+                    lineStart = position;
+                    lineEnd = (i > position && buffer[i - 1] == '\r') ? i - 1 : i;
+                    position = i + 1;
+                    return true;
+                }
+                i++;
+            }
+            if (eof) {
+                if (position == limit) {
+                    return false;
+                }
+                lineStart = position;
+                lineEnd = (buffer[limit - 1] == '\r') ? limit - 1 : limit;
+                position = limit;
+                return true;
+            }
+            if (position > 0) {
+                final int keep = limit - position;
+                System.arraycopy(buffer, position, buffer, 0, keep);
+                i = keep;
+                limit = keep;
+                position = 0;
+            } else if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            final int n = reader.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                eof = true;
+            } else {
+                limit += n;
+            }
+        }
+    }
+}
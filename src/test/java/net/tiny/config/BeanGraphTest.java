@@ -0,0 +1,95 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class BeanGraphTest {
+
+    private static Set<String> set(String... names) {
+        return new LinkedHashSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        // dao -> pool, service -> dao, cache, web -> service
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("web", set("service"));
+        dependencies.put("service", set("dao", "cache"));
+        dependencies.put("dao", set("pool"));
+        dependencies.put("cache", set());
+        dependencies.put("pool", set());
+        final Map<String, Long> finished = new ConcurrentHashMap<>();
+        // 'pool' and 'cache' are only created if both are in creation at once
+        final CyclicBarrier leaves = new CyclicBarrier(2);
+        BeanGraph graph = new BeanGraph(dependencies);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Map<String, Object> beans = graph.execute(key -> {
+                for (String dependency : dependencies.get(key)) {
+                    assertTrue(finished.containsKey(dependency), key + " before " + dependency);
+                }
+                try {
+                    if ("pool".equals(key) || "cache".equals(key)) {
+                        leaves.await(10L, TimeUnit.SECONDS);
+                    }
+                    Thread.sleep("pool".equals(key) ? 200L : 10L);
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+                finished.put(key, System.nanoTime());
+                return key.toUpperCase();
+            }, pool);
+            assertEquals(5, beans.size());
+            assertEquals("SERVICE", beans.get("service"));
+            List<String> path = graph.criticalPath();
+            assertEquals(Arrays.asList("pool", "dao", "service", "web"), path);
+            assertTrue(graph.cost("pool") >= 200000000L);
+            System.out.println("[BeanGraph] Critical path: " + graph.report());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecuteError() throws Exception {
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("a", set("b"));
+        dependencies.put("b", set());
+        BeanGraph graph = new BeanGraph(dependencies);
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> graph.execute(key -> {
+            if ("b".equals(key)) {
+                throw new IllegalStateException("Failed " + key);
+            }
+            return key;
+        }, ForkJoinPool.commonPool()));
+        assertEquals("Failed b", ex.getMessage());
+    }
+
+    @Test
+    public void testExecuteCycle() throws Exception {
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("a", set("b"));
+        dependencies.put("b", set("c"));
+        dependencies.put("c", set("a"));
+        BeanGraph graph = new BeanGraph(dependencies);
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> graph.execute(key -> key, ForkJoinPool.commonPool()));
+        assertEquals("Can not cycle reference beans 'a -> b -> c -> a'.", ex.getMessage());
+        assertEquals(Collections.emptyList(), new BeanGraph(Collections.emptyMap()).criticalPath());
+    }
+}
@@ -0,0 +1,80 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class BindingPlanTest {
+
+    public static class Base {
+        private String name;
+        private TimeUnit unit;
+    }
+
+    public static class Bean extends Base {
+        private int count;
+        private double rate;
+        private long total;
+
+        public void setTotal(long total) {
+            this.total = total;
+        }
+
+        public void setLabel(String label) {
+            this.total = label.length();
+        }
+    }
+
+    public static class Worker extends Thread {
+        private String task;
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        BindingPlan plan = BindingPlan.of(Bean.class);
+        assertSame(plan, BindingPlan.of(Bean.class));
+        assertEquals(5, plan.fields.length);
+        assertEquals("count", plan.fields[0].name);
+        assertEquals("name", plan.fields[3].name);
+        // 'setTotal' is bound by the field
+        assertEquals(1, plan.properties.length);
+        assertEquals("label", plan.properties[0].name);
+
+        Bean bean = (Bean) plan.newInstance();
+        plan.fields[0].set(bean, plan.fields[0].convert("12", null));
+        plan.fields[4].set(bean, plan.fields[4].convert("SECONDS", null));
+        assertEquals(12, bean.count);
+        assertEquals(TimeUnit.SECONDS, ((Base) bean).unit);
+        plan.properties[0].set(bean, "abc");
+        assertEquals(3L, bean.total);
+
+        assertThrows(RuntimeException.class, () -> BindingPlan.of(Runnable.class).newInstance());
+        // JDK fields are not accessible but not required
+        assertNotNull(BindingPlan.of(Worker.class).newInstance());
+    }
+
+    @Test
+    public void testBind() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("bean.class", Bean.class.getName());
+        properties.setProperty("bean.name", "Bean");
+        properties.setProperty("bean.unit", "SECONDS");
+        properties.setProperty("bean.count", "7");
+        properties.setProperty("bean.rate", "0.5");
+        properties.setProperty("bean.label", "label");
+        Configuration config = new Configuration(properties, null);
+        Bean bean = config.getAs("bean", Bean.class);
+        assertEquals(7, bean.count);
+        assertEquals("Bean", ((Base) bean).name);
+        assertEquals(TimeUnit.SECONDS, ((Base) bean).unit);
+        assertTrue(bean.rate == 0.5d);
+        assertEquals(5L, bean.total);
+    }
+}
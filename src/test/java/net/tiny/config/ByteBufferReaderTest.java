@@ -0,0 +1,91 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+public class ByteBufferReaderTest {
+
+    static final String LS = System.getProperty("line.separator");
+
+    private static String drain(Reader reader, int size) throws Exception {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[size];
+        int len;
+        while ((len = reader.read(buffer, 0, size)) != -1) {
+            assertTrue(len > 0);
+            text.append(buffer, 0, len);
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("name = \"日本語\" # ascii\n".getBytes(StandardCharsets.UTF_8));
+        out.write("emoji = 😀😁 end\n".getBytes(StandardCharsets.UTF_8));
+        // Malformed bytes
+        out.write(new byte[] { 'a', (byte) 0xC3, 'b', (byte) 0xFF, 'c', (byte) 0xE6, (byte) 0x97 });
+        byte[] bytes = out.toByteArray();
+        String expected = new String(bytes, StandardCharsets.UTF_8);
+
+        for (int size : new int[] { 1, 2, 3, 5, 8, 8192 }) {
+            assertEquals(expected, drain(new ByteBufferReader(ByteBuffer.wrap(bytes), StandardCharsets.UTF_8), size));
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            assertEquals(expected, drain(new ByteBufferReader(direct, StandardCharsets.UTF_8), size));
+        }
+    }
+
+    @Test
+    public void testOpen() throws Exception {
+        File file = File.createTempFile("reader", ".conf");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "a = 日本語".getBytes(StandardCharsets.UTF_8));
+        try (Reader reader = ByteBufferReader.open(file.toPath())) {
+            assertEquals("a = 日本語", drain(reader, 4));
+        }
+
+        // Mapped
+        StringBuilder text = new StringBuilder();
+        while (text.length() < ByteBufferReader.MAP_THRESHOLD) {
+            text.append("key").append(text.length()).append(" = 値").append(LS);
+        }
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        try (Reader reader = ByteBufferReader.open(file.toPath())) {
+            assertEquals(text.toString(), drain(reader, 8192));
+        }
+    }
+
+    @Test
+    public void testParseMapped() throws Exception {
+        File file = File.createTempFile("large", ".conf");
+        file.deleteOnExit();
+        StringBuilder text = new StringBuilder();
+        int items = 0;
+        while (text.length() < ByteBufferReader.MAP_THRESHOLD) {
+            text.append("web.ui {").append(LS)
+                .append("  item").append(items).append(" {").append(LS)
+                .append("    name = \"Item ").append(items).append("\"").append(LS)
+                .append("    url = indicator").append(items).append(".xhtml").append(LS)
+                .append("  }").append(LS)
+                .append("}").append(LS);
+            items++;
+        }
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+
+        ConfigurationHandler handler = new ConfigurationHandler();
+        handler.setResource(file.getAbsolutePath());
+        handler.parse();
+        assertEquals("Item 7", handler.getConfiguration().getString("web.ui.item7.name"));
+        assertEquals(items * 2, handler.getConfiguration().size());
+    }
+}
@@ -5,13 +5,27 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sun.net.httpserver.HttpServer;
 
 public class ConfigurationHandlerTest {
 
@@ -148,6 +162,45 @@ public class ConfigurationHandlerTest {
         assertEquals("en-US", langs.get(0));
     }
 
+    @Test
+    public void testParseMinifiedJson() throws Exception {
+        String conf = "{\"app\":{\"name\":\"demo\",\"port\":8080,\"debug\":false,"
+            + "\"hosts\":[\"a.com\",\"b.com\"],\"servers\":[{\"host\":\"a.com\",\"ports\":[80,443]},"
+            + "{\"host\":\"b.com\",\"tags\":[]}],\"matrix\":[[1,2],[3]],"
+            + "\"url\":\"${app.name}\\/index\\u0021\",\"ref\":${app.port}},\"empty\":{}}";
+        ByteArrayInputStream bais = new ByteArrayInputStream(conf.getBytes());
+        ConfigurationHandler handler = new ConfigurationHandler();
+        Properties prop = handler.load(bais, ContextHandler.Type.JSON);
+        assertEquals("demo", prop.getProperty("app.name"));
+        assertEquals("8080", prop.getProperty("app.port"));
+        assertEquals("false", prop.getProperty("app.debug"));
+        assertEquals("[a.com,b.com]", prop.getProperty("app.hosts"));
+        assertEquals("a.com", prop.getProperty("app.servers.0.host"));
+        assertEquals("[80,443]", prop.getProperty("app.servers.0.ports"));
+        assertEquals("b.com", prop.getProperty("app.servers.1.host"));
+        assertEquals("[]", prop.getProperty("app.servers.1.tags"));
+        assertEquals("[1,2]", prop.getProperty("app.matrix.0"));
+        assertEquals("[3]", prop.getProperty("app.matrix.1"));
+        assertEquals("${app.name}/index!", prop.getProperty("app.url"));
+        assertEquals("${app.port}", prop.getProperty("app.ref"));
+        assertEquals(12, prop.size());
+
+        // Same as the formatted one, on any buffer boundary
+        for (int size = 2; size < 8; size++) {
+            Properties other = new Properties();
+            new FlatJsonParser(new StringReader(conf), (k, v) -> other.setProperty(k.toString(), v.toString()), size).parse();
+            assertEquals(prop, other);
+        }
+
+        handler = new ConfigurationHandler();
+        handler.parse(new ByteArrayInputStream(conf.getBytes()), ContextHandler.Type.JSON);
+        Configuration config = handler.getConfiguration();
+        assertEquals(8080, config.getInteger("app.ref").intValue());
+        List<String> hosts = config.getValueList("app.hosts", String.class);
+        assertEquals(2, hosts.size());
+        assertEquals("b.com", hosts.get(1));
+    }
+
     @Test
     public void testParseYaml() throws Exception {
         String conf =
@@ -178,6 +231,133 @@ public class ConfigurationHandlerTest {
         assertEquals("en-US", config.getString("app.sample.local"));
     }
 
+    @Test
+    public void testParseYamlCollections() throws Exception {
+        String conf =
+        "---" + LS
+        + "spec:" + LS
+        + "  replicas: 3" + LS
+        + "  args:" + LS
+        + "  - --verbose" + LS
+        + "  - \"--port=8080\"  # Comment" + LS
+        + "  containers:" + LS
+        + "    - name: web" + LS
+        + "      image: 'nginx:1.19'" + LS
+        + "      ports:" + LS
+        + "        - containerPort: 80" + LS
+        + "        - containerPort: 443" + LS
+        + "    - name: sidecar" + LS
+        + "      command: [\"sh\", -c, 'echo #1']" + LS
+        + "      env: {LEVEL: debug, TAGS: [a, b]}" + LS
+        + "  matrix:" + LS
+        + "  - - 1" + LS
+        + "    - 2" + LS
+        + "  selector: {" + LS
+        + "    app: web," + LS
+        + "    tier: front }" + LS
+        + "  hosts:" + LS
+        + "  -" + LS
+        + "    host: a.com" + LS
+        + "metadata:" + LS
+        + "  labels:" + LS
+        + "    app: web" + LS
+        + "  description: A long" + LS
+        + "    plain text" + LS
+        + "url: http://www.abc.com/#top" + LS
+        + "time: 09:15" + LS;
+        ByteArrayInputStream bais = new ByteArrayInputStream(conf.getBytes());
+        ConfigurationHandler handler = new ConfigurationHandler();
+        Properties prop = handler.load(bais, ContextHandler.Type.YAML);
+        assertEquals("3", prop.getProperty("spec.replicas"));
+        assertEquals("--verbose, --port=8080", prop.getProperty("spec.args"));
+        assertEquals("web", prop.getProperty("spec.containers.0.name"));
+        assertEquals("nginx:1.19", prop.getProperty("spec.containers.0.image"));
+        assertEquals("80", prop.getProperty("spec.containers.0.ports.0.containerPort"));
+        assertEquals("443", prop.getProperty("spec.containers.0.ports.1.containerPort"));
+        assertEquals("sidecar", prop.getProperty("spec.containers.1.name"));
+        assertEquals("sh, -c, echo #1", prop.getProperty("spec.containers.1.command"));
+        assertEquals("debug", prop.getProperty("spec.containers.1.env.LEVEL"));
+        assertEquals("a, b", prop.getProperty("spec.containers.1.env.TAGS"));
+        assertEquals("1, 2", prop.getProperty("spec.matrix.0"));
+        assertEquals("web", prop.getProperty("spec.selector.app"));
+        assertEquals("front", prop.getProperty("spec.selector.tier"));
+        assertEquals("a.com", prop.getProperty("spec.hosts.0.host"));
+        assertEquals("web", prop.getProperty("metadata.labels.app"));
+        assertEquals("A long plain text", prop.getProperty("metadata.description"));
+        assertEquals("http://www.abc.com/#top", prop.getProperty("url"));
+        assertEquals("09:15", prop.getProperty("time"));
+        assertEquals(18, prop.size());
+
+        bais = new ByteArrayInputStream(conf.getBytes());
+        handler = new ConfigurationHandler();
+        handler.parse(bais, ContextHandler.Type.YAML);
+        Configuration config = handler.getConfiguration();
+        List<String> list = config.getValueList("spec.args", String.class);
+        assertEquals(2, list.size());
+        assertEquals("--port=8080", list.get(1));
+    }
+
+    @Test
+    public void testParseYamlBlockScalar() throws Exception {
+        String conf =
+        "script: |" + LS
+        + "  #!/bin/sh" + LS
+        + "  echo a" + LS
+        + LS
+        + "    echo b" + LS
+        + "strip: |-" + LS
+        + "  line" + LS
+        + LS
+        + "keep: |+" + LS
+        + "  line" + LS
+        + LS
+        + "folded: >" + LS
+        + "  a" + LS
+        + "  b" + LS
+        + LS
+        + "  c" + LS
+        + "list:" + LS
+        + "- >-" + LS
+        + "  x" + LS
+        + "  y" + LS
+        + "- z" + LS
+        + "last: end" + LS;
+        ByteArrayInputStream bais = new ByteArrayInputStream(conf.getBytes());
+        ConfigurationHandler handler = new ConfigurationHandler();
+        Properties prop = handler.load(bais, ContextHandler.Type.YAML);
+        assertEquals("#!/bin/sh\necho a\n\n  echo b\n", prop.getProperty("script"));
+        assertEquals("line", prop.getProperty("strip"));
+        assertEquals("line\n\n", prop.getProperty("keep"));
+        assertEquals("a b\nc\n", prop.getProperty("folded"));
+        assertEquals("x y, z", prop.getProperty("list"));
+        assertEquals("end", prop.getProperty("last"));
+    }
+
+    @Test
+    public void testParseYamlServices() throws Exception {
+        StringBuilder yaml = new StringBuilder();
+        int services = 50;
+        for (int i = 0; i < services; i++) {
+            yaml.append("service").append(i).append(':').append(LS)
+                .append("  metadata:").append(LS)
+                .append("    name: web-").append(i).append(LS)
+                .append("    labels: {app: web, tier: front}").append(LS)
+                .append("  spec:").append(LS)
+                .append("    containers:").append(LS)
+                .append("    - name: nginx  # Comment").append(LS)
+                .append("      image: \"nginx:1.19\"").append(LS)
+                .append("      args: [--port, ").append(i).append(']').append(LS)
+                .append("    replicas: 3").append(LS);
+        }
+        byte[] bytes = yaml.toString().getBytes();
+        ConfigurationHandler handler = new ConfigurationHandler();
+        Properties prop = handler.load(new ByteArrayInputStream(bytes), ContextHandler.Type.YAML);
+        assertEquals(services * 7, prop.size());
+        assertEquals("web-49", prop.getProperty("service49.metadata.name"));
+        assertEquals("nginx:1.19", prop.getProperty("service49.spec.containers.0.image"));
+        assertEquals("--port, 49", prop.getProperty("service49.spec.containers.0.args"));
+    }
+
     @Test
     public void testParseVariables() throws Exception {
         String conf =
@@ -211,6 +391,25 @@ public class ConfigurationHandlerTest {
         assertEquals("true", config.getString("admin.auth.api.enable"));
     }
 
+    @Test
+    public void testParseCycleReference() throws Exception {
+        String conf =
+        "app.alias = m" + LS
+        + "app.a = ${${app.alias}.b}" + LS
+        + "m.b = ${app.a}" + LS
+        + LS;
+        ByteArrayInputStream bais = new ByteArrayInputStream(conf.getBytes());
+        ConfigurationHandler handler = new ConfigurationHandler();
+        try {
+            handler.parse(bais, ContextHandler.Type.PROPERTIES);
+            fail();
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().startsWith("Can not cycle reference '"), ex.getMessage());
+            assertTrue(ex.getMessage().contains("app.a -> m.b") || ex.getMessage().contains("m.b -> app.a"),
+                    ex.getMessage());
+        }
+    }
+
     @Test
     public void testGenerateKey() throws Exception {
         final StringBuffer key = new StringBuffer("url");
@@ -254,6 +453,370 @@ public class ConfigurationHandlerTest {
 
     }
 
+    /**
+     * Hold a request until several requests are in flight. If they never are,
+     * the timeout is marked and the later requests are not held.
+     */
+    private static void arrive(CountDownLatch inFlight, AtomicBoolean timedOut) {
+        inFlight.countDown();
+        try {
+            if (!timedOut.get() && !inFlight.await(10L, TimeUnit.SECONDS)) {
+                timedOut.set(true);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testConcurrentIncludes() throws Exception {
+        final int includes = 10;
+        // The include pool runs several requests at once
+        final CountDownLatch inFlight = new CountDownLatch(4);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(includes + 2);
+        server.setExecutor(executor);
+        final String base = "http://localhost:" + server.getAddress().getPort() + "/";
+        server.createContext("/", exchange -> {
+            String name = exchange.getRequestURI().getPath().substring(1);
+            String body;
+            if (name.equals("nested.conf")) {
+                body = "nested = inner" + LS + "key = nested" + LS;
+            } else {
+                int n = Integer.parseInt(name.substring(0, name.indexOf('.')));
+                body = "key = include" + n + LS + "part" + n + " = " + n + LS;
+                if (n == 0) {
+                    body = "include url(\"" + base + "nested.conf\")" + LS + body;
+                }
+            }
+            arrive(inFlight, timedOut);
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        try {
+            StringBuilder conf = new StringBuilder();
+            for (int i = 0; i < includes; i++) {
+                conf.append("key = parent").append(i).append(LS);
+                conf.append("include url(\"").append(base).append(i).append(".conf\")").append(LS);
+            }
+            conf.append("part3 = parent").append(LS);
+            conf.append("sub {").append(LS)
+                .append("  include url(\"").append(base).append("1.conf\")").append(LS)
+                .append("}").append(LS);
+
+            ConfigurationHandler handler = new ConfigurationHandler();
+            Properties prop = handler.load(new ByteArrayInputStream(conf.toString().getBytes()), ContextHandler.Type.HOCON);
+            assertFalse(timedOut.get(), "Not loaded concurrently");
+
+            // The same precedence as loading one by one
+            assertEquals("include9", prop.getProperty("key"));
+            assertEquals("inner", prop.getProperty("nested"));
+            assertEquals("0", prop.getProperty("part0"));
+            assertEquals("parent", prop.getProperty("part3"));
+            assertEquals("9", prop.getProperty("part9"));
+            assertEquals("include1", prop.getProperty("sub.key"));
+            assertEquals("1", prop.getProperty("sub.part1"));
+            assertEquals(includes + 4, prop.size());
+            assertEquals(includes + 1, handler.getSources().size());
+        } finally {
+            server.stop(0);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testProfileChain() throws Exception {
+        Path dir = Files.createTempDirectory("chain");
+        Path base = dir.resolve("application.yml");
+        Path profile = dir.resolve("application-dev.properties");
+        Path host = dir.resolve("application-host1.conf");
+        Files.write(base, ("server:" + LS
+                + "  port: 80" + LS
+                + "  name: base" + LS
+                + "  timeout: 30" + LS
+                + "logging:" + LS
+                + "  level: info" + LS).getBytes(StandardCharsets.UTF_8));
+        Files.write(profile, ("server.port = 8080" + LS
+                + "server.name = dev" + LS
+                + "db.url = jdbc:h2:mem:dev" + LS).getBytes(StandardCharsets.UTF_8));
+        Files.write(host, ("server {" + LS
+                + "  name = host1" + LS
+                + "}" + LS).getBytes(StandardCharsets.UTF_8));
+        List<String> chain = new ArrayList<>();
+        chain.add(base.toString());
+        chain.add(profile.toString());
+        chain.add(host.toString());
+
+        ConfigurationHandler handler = new ConfigurationHandler();
+        handler.setResources(chain);
+        assertEquals(base.toString(), handler.getResource());
+        assertEquals(chain, handler.getResources());
+        Configuration config = handler.getConfiguration();
+        assertEquals(8080, config.getInteger("server.port").intValue());
+        assertEquals("host1", config.getString("server.name"));
+        assertEquals(30, config.getInteger("server.timeout").intValue());
+        assertEquals("info", config.getString("logging.level"));
+        assertEquals("jdbc:h2:mem:dev", config.getString("db.url"));
+        assertEquals(3, handler.getSources().size());
+
+        // The events of the chain in order, the last value wins
+        final Properties entries = new Properties();
+        handler.parse((key, value) -> entries.setProperty(key.toString(), value.toString()));
+        assertEquals("host1", entries.getProperty("server.name"));
+        assertEquals("8080", entries.getProperty("server.port"));
+        assertEquals(5, entries.size());
+
+        // A single resource again
+        handler.setResource(base.toString());
+        assertEquals(1, handler.getResources().size());
+        handler.parse();
+        assertEquals("base", handler.getConfiguration().getString("server.name"));
+
+        // The remote layers are loaded concurrently
+        final int layers = 6;
+        final CountDownLatch inFlight = new CountDownLatch(4);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(layers);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            String name = exchange.getRequestURI().getPath().substring(1);
+            int n = Integer.parseInt(name.substring(0, name.indexOf('.')));
+            String body = "key = layer" + n + LS + "layer" + n + " = " + n + LS;
+            arrive(inFlight, timedOut);
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        try {
+            chain.clear();
+            for (int i = 0; i < layers; i++) {
+                chain.add("http://localhost:" + server.getAddress().getPort() + "/" + i + ".conf");
+            }
+            handler = new ConfigurationHandler();
+            handler.setResources(chain);
+            handler.parse();
+            assertFalse(timedOut.get(), "Not loaded concurrently");
+            config = handler.getConfiguration();
+            assertEquals("layer5", config.getString("key"));
+            assertEquals(0, config.getInteger("layer0").intValue());
+            assertEquals(layers + 1, config.size());
+        } finally {
+            server.stop(0);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testIncludeCache() throws Exception {
+        Path directory = Files.createTempDirectory("includes");
+        directory.toFile().deleteOnExit();
+        File part = directory.resolve("part.conf").toFile();
+        File parent = directory.resolve("parent.conf").toFile();
+        part.deleteOnExit();
+        parent.deleteOnExit();
+        Files.write(part.toPath(), ("name = shared" + LS + "count = 1" + LS).getBytes(StandardCharsets.UTF_8));
+        String href = part.toURI().toURL().toString();
+        Files.write(parent.toPath(), ("a {" + LS + "  include url(\"" + href + "\")" + LS + "}" + LS
+                + "b {" + LS + "  include url(\"" + href + "\")" + LS + "}" + LS).getBytes(StandardCharsets.UTF_8));
+        // Not modified just now
+        long modified = System.currentTimeMillis() - 10000L;
+        part.setLastModified(modified);
+        parent.setLastModified(modified);
+
+        final List<String> types = new ArrayList<>();
+        ContextHandler.Listener listener = new ContextHandler.Listener() {
+            @Override
+            public void created(Object bean, Class<?> beanClass) {
+            }
+            @Override
+            public void parsed(String type, String resource, int size) {
+                synchronized (types) {
+                    types.add(type);
+                }
+            }
+            @Override
+            public void cached(String name, Object value, boolean config) {
+            }
+        };
+        ConfigurationHandler handler = new ConfigurationHandler();
+        handler.setListener(listener);
+        handler.setResource(parent.getAbsolutePath());
+        handler.parse();
+        assertEquals("shared", handler.getConfiguration().getString("a.name"));
+        assertEquals("shared", handler.getConfiguration().getString("b.name"));
+        assertEquals(2, handler.getSources().size());
+        assertNotNull(ParseCache.SHARED.get(part.toURI().toURL(), parent.getAbsolutePath()));
+
+        // Shared by the other handlers, without parsing
+        types.clear();
+        ConfigurationHandler other = new ConfigurationHandler();
+        other.setListener(listener);
+        other.setResource(parent.getAbsolutePath());
+        other.parse();
+        assertEquals("[CACHED]", types.toString());
+        assertEquals("1", other.getConfiguration().getString("b.count"));
+        assertEquals(handler.getSources(), other.getSources());
+        // The cached values are not changed by a configuration
+        other.getConfiguration().reload(new Properties());
+        other = new ConfigurationHandler();
+        other.setResource(parent.getAbsolutePath());
+        other.parse();
+        assertEquals("1", other.getConfiguration().getString("a.count"));
+
+        // A changed include is parsed again with its parent
+        Files.write(part.toPath(), ("name = changed" + LS + "count = 2" + LS).getBytes(StandardCharsets.UTF_8));
+        part.setLastModified(modified + 1000L);
+        types.clear();
+        other = new ConfigurationHandler();
+        other.setListener(listener);
+        other.setResource(parent.getAbsolutePath());
+        other.parse();
+        assertEquals("changed", other.getConfiguration().getString("a.name"));
+        assertEquals("2", other.getConfiguration().getString("b.count"));
+        assertTrue(types.contains("HOCON"), types.toString());
+
+        // A file modified just now is not cached
+        Files.write(part.toPath(), ("name = racy" + LS).getBytes(StandardCharsets.UTF_8));
+        other = new ConfigurationHandler();
+        other.setResource(part.getAbsolutePath());
+        other.parse();
+        assertEquals("racy", other.getConfiguration().getString("name"));
+        assertNull(ParseCache.SHARED.get(part.toURI().toURL(), part.getAbsolutePath()));
+    }
+
+    @Test
+    public void testIncludeCacheBase() throws Exception {
+        Path directory = Files.createTempDirectory("bases");
+        Path first = Files.createDirectory(directory.resolve("first"));
+        Path second = Files.createDirectory(directory.resolve("second"));
+        Path fragment = directory.resolve("fragment.conf");
+        Files.write(first.resolve("local.conf"), ("value = first" + LS).getBytes(StandardCharsets.UTF_8));
+        Files.write(second.resolve("local.conf"), ("value = second" + LS).getBytes(StandardCharsets.UTF_8));
+        Files.write(fragment, ("include file(\"local.conf\")" + LS).getBytes(StandardCharsets.UTF_8));
+        // Not modified just now
+        long modified = System.currentTimeMillis() - 10000L;
+        for (Path path : new Path[] { first.resolve("local.conf"), second.resolve("local.conf"), fragment }) {
+            path.toFile().setLastModified(modified);
+            path.toFile().deleteOnExit();
+        }
+        first.toFile().deleteOnExit();
+        second.toFile().deleteOnExit();
+        directory.toFile().deleteOnExit();
+        final String conf = "shared {" + LS + "  include url(\"" + fragment.toUri().toURL() + "\")" + LS + "}" + LS;
+
+        // The same fragment, its file include is resolved against each handler's resource
+        ConfigurationHandler handler = new ConfigurationHandler();
+        handler.setResource(first.toString());
+        Properties prop = handler.load(new ByteArrayInputStream(conf.getBytes()), ContextHandler.Type.HOCON);
+        assertEquals("first", prop.getProperty("shared.value"));
+        ConfigurationHandler other = new ConfigurationHandler();
+        other.setResource(second.toString());
+        prop = other.load(new ByteArrayInputStream(conf.getBytes()), ContextHandler.Type.HOCON);
+        assertEquals("second", prop.getProperty("shared.value"));
+        // Still cached for each of them
+        assertNotNull(ParseCache.SHARED.get(fragment.toUri().toURL(), first.toString()));
+        assertNotNull(ParseCache.SHARED.get(fragment.toUri().toURL(), second.toString()));
+    }
+
+    @Test
+    public void testParseEvents() throws Exception {
+        final String[] resources = {
+                "src/test/resources/config/reference.conf",
+                "src/test/resources/config/reference.json",
+                "src/test/resources/config/app-dev.yml",
+                "src/test/resources/config/reference.properties",
+                "src/test/resources/config/includes.conf"
+        };
+        for (String resource : resources) {
+            final Properties entries = new Properties();
+            final Deque<String> objects = new ArrayDeque<>();
+            final List<String> includes = new ArrayList<>();
+            ConfigurationHandler handler = new ConfigurationHandler();
+            handler.setResource(resource);
+            handler.parse(new ConfigEventHandler() {
+                @Override
+                public void onEntry(CharSequence key, CharSequence value) {
+                    entries.setProperty(key.toString(), value.toString());
+                }
+                @Override
+                public void onEnterObject(CharSequence key) {
+                    objects.push(key.toString());
+                }
+                @Override
+                public void onExitObject(CharSequence key) {
+                    assertEquals(objects.pop(), key.toString());
+                }
+                @Override
+                public void onInclude(String href, CharSequence parentKey) {
+                    includes.add(parentKey + href);
+                }
+            });
+            assertTrue(objects.isEmpty(), resource);
+            assertFalse(entries.isEmpty(), resource);
+
+            // Same as the loaded properties
+            ConfigurationHandler.Type type = resource.endsWith(".conf") ? ConfigurationHandler.Type.HOCON
+                    : resource.endsWith(".json") ? ConfigurationHandler.Type.JSON
+                    : resource.endsWith(".yml") ? ConfigurationHandler.Type.YAML : ConfigurationHandler.Type.PROPERTIES;
+            Properties prop = handler.load(Files.newInputStream(new File(resource).toPath()), type);
+            assertEquals(prop, entries, resource);
+            if (resource.endsWith("includes.conf")) {
+                assertEquals(2, includes.size());
+                assertEquals("classpath (config/parts/foo.conf)", includes.get(0));
+                assertEquals("foo.ui.messages.classpath (config/parts/messages.properties)", includes.get(1));
+            }
+        }
+
+        final List<String> events = new ArrayList<>();
+        String yaml = "a:" + LS
+                + "  b: 1" + LS
+                + "  c:" + LS
+                + "    - x" + LS
+                + "    - y" + LS
+                + "  d:" + LS
+                + "    - name: n" + LS
+                + "e: 2" + LS;
+        ConfigEventHandler recorder = new ConfigEventHandler() {
+            @Override
+            public void onEntry(CharSequence key, CharSequence value) {
+                events.add(key + "=" + value);
+            }
+            @Override
+            public void onEnterObject(CharSequence key) {
+                events.add(key + "{");
+            }
+            @Override
+            public void onExitObject(CharSequence key) {
+                events.add("}" + key);
+            }
+        };
+        new ConfigurationHandler().parse(new ByteArrayInputStream(yaml.getBytes()), ContextHandler.Type.YAML, recorder);
+        assertEquals("[a{, a.b=1, a.c=x, y, a.d.0{, a.d.0.name=n, }a.d.0, }a, e=2]", events.toString());
+
+        events.clear();
+        String json = "{\"a\": {\"b\": 1, \"c\": [\"x\", \"y\"], \"d\": [{\"name\": \"n\"}]}, \"e\": 2}";
+        new ConfigurationHandler().parse(new ByteArrayInputStream(json.getBytes()), ContextHandler.Type.JSON, recorder);
+        assertEquals("[a{, a.b=1, a.c=[x,y], a.d.0{, a.d.0.name=n, }a.d.0, }a, e=2]", events.toString());
+
+        events.clear();
+        String conf = "a {" + LS
+                + "  b = 1" + LS
+                + "  d {" + LS
+                + "    name = n" + LS
+                + "  }" + LS
+                + "}" + LS
+                + "e = 2" + LS;
+        new ConfigurationHandler().parse(new ByteArrayInputStream(conf.getBytes()), ContextHandler.Type.HOCON, recorder);
+        assertEquals("[a{, a.b=1, a.d{, a.d.name=n, }a.d, }a, e=2]", events.toString());
+    }
+
     @Test
     public void testHoconGetValue() throws Exception {
         ConfigurationHandler handler = new ConfigurationHandler();
@@ -275,11 +838,13 @@ public class ConfigurationHandlerTest {
         assertNotNull(sub);
         assertEquals("child", sub.getString("name"));
         assertEquals(new Double(1.4d), sub.getDouble("threshold"));
-        assertEquals(9, config.size());
+        assertEquals(2, sub.size());
+        // Sub configuration is a view, not cached in the parent
+        assertEquals(8, config.size());
         // Test cache
         Configuration other = config.getConfiguration("APP.sample.nested");
         assertEquals(sub, other);
-        assertEquals(9, config.size());
+        assertEquals(8, config.size());
     }
 
     @Test
@@ -314,11 +879,13 @@ public class ConfigurationHandlerTest {
         assertNotNull(sub);
         assertEquals("child", sub.getString("name"));
         assertEquals(new Double(1.4d), sub.getDouble("threshold"));
-        assertEquals(9, config.size());
+        assertEquals(2, sub.size());
+        // Sub configuration is a view, not cached in the parent
+        assertEquals(8, config.size());
         // Test cache
         Configuration other = config.getConfiguration("APP.sample.nested");
         assertEquals(sub, other);
-        assertEquals(9, config.size());
+        assertEquals(8, config.size());
     }
 
     @Test
@@ -355,11 +922,13 @@ public class ConfigurationHandlerTest {
         assertNotNull(sub);
         assertEquals("child", sub.getString("name"));
         assertEquals(new Double(1.4d), sub.getDouble("threshold"));
-        assertEquals(9, config.size());
+        assertEquals(2, sub.size());
+        // Sub configuration is a view, not cached in the parent
+        assertEquals(8, config.size());
         // Test cache
         Configuration other = config.getConfiguration("APP.sample.nested");
         assertEquals(sub, other);
-        assertEquals(9, config.size());
+        assertEquals(8, config.size());
     }
 
     @Test
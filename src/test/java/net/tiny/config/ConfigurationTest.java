@@ -1,6 +1,7 @@
 package net.tiny.config;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -8,17 +9,32 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
@@ -194,11 +210,13 @@ public class ConfigurationTest {
         assertNotNull(sub);
         assertEquals("child", sub.getString("name"));
         assertEquals(new Double(1.4d), sub.getDouble("threshold"));
-        assertEquals(8, config.size());
+        assertEquals(2, sub.size());
+        // Sub configuration is a view, not cached in the parent
+        assertEquals(7, config.size());
         // Test cache
         Configuration other = config.getConfiguration("APP.sample.nested");
         assertEquals(sub, other);
-        assertEquals(8, config.size());
+        assertEquals(7, config.size());
     }
 
     @Test
@@ -231,6 +249,53 @@ public class ConfigurationTest {
         assertEquals("2016-09-16", config.getLocalDate("app.sample.day").toString());
     }
 
+    @Test
+    public void testMemoizedReference() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("paas.vcap.alias", "vcap.services.ups-admin.credentials");
+        properties.setProperty("vcap.services.ups-admin.credentials.admin.api.server.auth.enable", "true");
+        properties.setProperty("admin.auth.api.enable", "${${paas.vcap.alias}.admin.api.server.auth.enable}");
+        properties.setProperty("admin.auth.api.url", "http://${admin.auth.api.host}/");
+        Configuration config = new Configuration(properties, null);
+
+        String value = config.getString("admin.auth.api.enable");
+        assertEquals("true", value);
+        assertTrue(value == config.getString("admin.auth.api.enable"));
+        // Unresolved reference is not cached
+        assertNull(config.getString("admin.auth.api.url"));
+        properties.setProperty("admin.auth.api.host", "localhost");
+        assertEquals("http://localhost/", config.getString("admin.auth.api.url"));
+    }
+
+    @Test
+    public void testPrimitiveValue() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("pool.size", "5");
+        properties.setProperty("pool.max", "${pool.size}");
+        properties.setProperty("pool.timeout", "30000");
+        properties.setProperty("pool.ratio", "0.75");
+        properties.setProperty("pool.enable", "yes");
+        Configuration config = new Configuration(properties, null);
+
+        assertEquals(5, config.getInt("pool.size", 1));
+        assertEquals(5, config.getInt("pool.max", 1));
+        assertEquals(5, config.getInt("pool.max", 1));
+        assertEquals(30000L, config.getLong("pool.timeout", 0L));
+        assertEquals(0.75d, config.getDouble("pool.ratio", 0d));
+        assertEquals(0.75d, config.getDouble("pool.ratio", 0d));
+        assertTrue(config.getBoolean("pool.enable", false));
+        assertTrue(config.getBoolean("pool.enable", false));
+        // Defaults
+        assertEquals(10, config.getInt("pool.none", 10));
+        assertEquals(-1L, config.getLong("pool.none", -1L));
+        assertEquals(1.5d, config.getDouble("pool.none", 1.5d));
+        assertTrue(config.getBoolean("pool.none", true));
+        // Same key as other type
+        assertEquals(5L, config.getLong("pool.size", 0L));
+        assertEquals(5.0d, config.getDouble("pool.size", 0d));
+        assertEquals(5, config.getInt("pool.size", 0));
+    }
+
     @Test
     public void testCycleReference() throws Exception {
         String prop =
@@ -407,6 +472,408 @@ public class ConfigurationTest {
         assertEquals(1, list.size());
     }
 
+    @Test
+    public void testInstantiateBeans() throws Exception {
+        String prop = "#" + LS
+                + "main = ${web}, ${batch}" + LS
+                + "web.class = " + Wired.class.getName() + LS
+                + "web.name = web" + LS
+                + "web.left = ${dao}" + LS
+                + "web.right = ${cache}" + LS
+                + "dao.class = " + Concurrent.class.getName() + LS
+                + "dao.name = dao" + LS
+                + "cache.class = " + Concurrent.class.getName() + LS
+                + "cache.name = cache" + LS
+                + "batch.class = " + Wired.class.getName() + LS
+                + "batch.name = batch" + LS
+                + "batch.left = ${dao}" + LS
+                + "other.class = " + Wired.class.getName() + LS
+                + "other.name = other" + LS
+                + "unknown.class = x.y.Unknown" + LS + LS;
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(prop.getBytes()));
+        Configuration config = new Configuration(properties, null);
+
+        // 'dao' and 'cache' are only created if both are in creation at once
+        Concurrent.STARTED = new CyclicBarrier(2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Set<String> created = config.instantiate(pool, "main");
+            // (dao, cache) -> (web, batch)
+            assertEquals(new TreeSet<>(Arrays.asList("web", "batch", "dao", "cache")), new TreeSet<>(created));
+
+            Wired web = config.getAs("web", Wired.class);
+            Wired batch = config.getAs("batch", Wired.class);
+            assertEquals("dao", web.left.name);
+            assertEquals("cache", web.right.name);
+            assertTrue(web.left == batch.left);
+            List<?> main = config.getAs("main", List.class);
+            assertTrue(web == main.get(0));
+
+            assertEquals(new TreeSet<>(Arrays.asList("other")), new TreeSet<>(config.remains()));
+            assertTrue(config.findUnimplements().contains("unknown"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLazyBean() throws Exception {
+        String prop = "#" + LS
+                + "client.class = " + Client.class.getName() + LS
+                + "client.store = ${store}" + LS
+                + "client.backup = ${backup}" + LS
+                + "store.class = " + LazyStore.class.getName() + LS
+                + "store.lazy = true" + LS
+                + "store.name = db" + LS
+                + "backup.class = " + LazyStore.class.getName() + LS
+                + "backup.lazy = true" + LS
+                + "backup.name = backup" + LS
+                + "spare.class = " + LazyStore.class.getName() + LS
+                + "spare.lazy = true" + LS + LS;
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(prop.getBytes()));
+        Configuration config = new Configuration(properties, null);
+        LazyStore.COUNT.set(0);
+
+        Client client = config.getAs("client", Client.class);
+        assertNotNull(client.store);
+        assertTrue(LazyBean.isLazy(client.store));
+        assertEquals(0, LazyStore.COUNT.get());
+        assertFalse(config.contains("store"));
+        assertEquals("Storage(lazy ${store})", client.store.toString());
+        assertTrue(client.store.equals(client.store));
+
+        // Created on first call
+        assertEquals("db", client.store.getName());
+        assertEquals(1, LazyStore.COUNT.get());
+        assertEquals("db", client.store.getName());
+        assertEquals(1, LazyStore.COUNT.get());
+        assertTrue(config.getAs("store", Storage.class) instanceof LazyStore);
+
+        // Lazy beans are not created by remains
+        assertTrue(config.remains().isEmpty());
+        assertEquals(1, LazyStore.COUNT.get());
+        assertEquals("backup", client.backup.getName());
+        assertEquals(2, LazyStore.COUNT.get());
+    }
+
+    @Test
+    public void testConcurrentGetAs() throws Exception {
+        String prop = "#" + LS
+                + "shared.class = " + Counted.class.getName() + LS
+                + "shared.name = shared" + LS
+                + "left.class = " + Counted.class.getName() + LS
+                + "left.name = left" + LS
+                + "left.ref = ${shared}" + LS
+                + "right.class = " + Counted.class.getName() + LS
+                + "right.name = right" + LS
+                + "right.ref = ${shared}" + LS + LS;
+        final String[] keys = {"shared", "left", "right"};
+        final int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 50; round++) {
+                Properties properties = new Properties();
+                properties.load(new ByteArrayInputStream(prop.getBytes()));
+                final Configuration config = new Configuration(properties, null);
+                Counted.COUNT.set(0);
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<Counted>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    final String key = keys[t % keys.length];
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return config.getAs(key, Counted.class);
+                    }));
+                }
+                start.countDown();
+                Counted shared = config.getAs("shared", Counted.class);
+                for (int t = 0; t < threads; t++) {
+                    Counted bean = futures.get(t).get();
+                    assertNotNull(bean);
+                    assertTrue(bean == config.getAs(keys[t % keys.length], Counted.class));
+                    if (null != bean.ref) {
+                        assertTrue(shared == bean.ref);
+                    }
+                }
+                // Created once per key
+                assertEquals(3, Counted.COUNT.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testGetAsSelfReference() throws Exception {
+        String prop = "self.class = " + Counted.class.getName() + LS
+                + "self.ref = ${self}" + LS + LS;
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(prop.getBytes()));
+        Configuration config = new Configuration(properties, null);
+        try {
+            config.getAs("self", Counted.class);
+            fail("Can not cycle reference");
+        } catch (RuntimeException ex) {
+            assertEquals("Can not cycle reference bean 'self'.", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testGetAsCrossThreadCycle() throws Exception {
+        String prop = "left.class = " + Paired.class.getName() + LS
+                + "left.ref = ${right}" + LS
+                + "right.class = " + Paired.class.getName() + LS
+                + "right.ref = ${left}" + LS + LS;
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(prop.getBytes()));
+        final Configuration config = new Configuration(properties, null);
+        // Both beans are in creation before any of them resolves its reference
+        Paired.CREATED = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Paired> left = executor.submit(() -> config.getAs("left", Paired.class));
+            Future<Paired> right = executor.submit(() -> config.getAs("right", Paired.class));
+            for (Future<Paired> future : Arrays.asList(left, right)) {
+                try {
+                    future.get(10L, TimeUnit.SECONDS);
+                    fail("Can not cycle reference");
+                } catch (ExecutionException ex) {
+                    assertTrue(ex.getCause().getMessage().startsWith("Can not cycle reference bean"),
+                            ex.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSubConfigurationView() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("app.name", "${app.prefix}-app");
+        properties.setProperty("app.prefix", "old");
+        properties.setProperty("app.web.host", "localhost");
+        properties.setProperty("app.web.port", "8080");
+        properties.setProperty("app.web.url", "http://${host}:${port}/");
+        Configuration config = new Configuration(properties, null);
+
+        Configuration app = config.getConfiguration("app");
+        Configuration web = app.getConfiguration("web");
+        assertTrue(web == config.getConfiguration("app.web"));
+        assertNull(config.getConfiguration("none"));
+        assertEquals(3, web.size());
+        assertEquals(new TreeSet<>(Arrays.asList("host", "port", "url")), new TreeSet<>(web.getAllPropertyNames()));
+        // Resolved in the scope of the sub configuration
+        assertEquals("http://localhost:8080/", web.getString("url"));
+        assertEquals(8080, web.getInt("port", 0));
+        // Nothing copied into the root store
+        assertEquals(5, properties.size());
+        assertEquals(5, config.size());
+
+        // Changes of the root store are seen by the views
+        Properties changed = new Properties();
+        changed.putAll(properties);
+        changed.setProperty("app.web.port", "9090");
+        assertEquals(new TreeSet<>(Arrays.asList("app.web.port")), config.reload(changed));
+        assertEquals("http://localhost:9090/", web.getString("url"));
+        assertEquals(9090, web.getInt("port", 0));
+        assertEquals("9090", app.getProperties("web").getProperty("port"));
+    }
+
+    @Test
+    public void testCompactStorage() throws Exception {
+        Properties properties = new Properties();
+        for (int i = 0; i < 500; i++) {
+            String prefix = "vcap.services.ups-admin.credentials.item" + i + ".";
+            properties.setProperty(prefix + "url", "http://${vcap.services.ups-admin.credentials.host}/");
+            properties.setProperty(prefix + "enabled", "true");
+            properties.setProperty(prefix + "port", String.valueOf(8080 + i % 4));
+        }
+        properties.setProperty("vcap.services.ups-admin.credentials.host", "localhost");
+        Configuration config = new Configuration(properties, null);
+        Configuration compact = Configuration.compact(properties, null);
+
+        assertEquals(config.size(), compact.size());
+        assertEquals(config.getAllPropertyNames(), compact.getAllPropertyNames());
+        for (String name : config.getAllPropertyNames()) {
+            assertEquals(config.getString(name), compact.getString(name));
+        }
+        assertTrue(compact.contains("vcap.services.ups-admin.credentials.item9.port"));
+        assertFalse(compact.contains("vcap.services.ups-admin.credentials.item9"));
+        assertFalse(compact.contains("vcap.services.unknown.credentials.item9.port"));
+        Configuration item = compact.getConfiguration("vcap.services.ups-admin.credentials.item7");
+        assertEquals(3, item.size());
+        assertEquals(8083, (int) item.getInteger("port"));
+
+        // Reload removes and replaces the values
+        Properties changed = new Properties();
+        changed.putAll(properties);
+        changed.remove("vcap.services.ups-admin.credentials.item1.url");
+        changed.setProperty("vcap.services.ups-admin.credentials.host", "example.com");
+        assertEquals(2, compact.reload(changed).size());
+        assertEquals(1500, compact.size());
+        assertNull(compact.getString("vcap.services.ups-admin.credentials.item1.url"));
+        assertEquals("http://example.com/", compact.getString("vcap.services.ups-admin.credentials.item2.url"));
+
+        Footprint before = config.footprint();
+        Footprint after = compact.footprint();
+        System.out.println(before);
+        System.out.println(after);
+        assertEquals(1501, before.getEntries());
+        assertEquals(1500, after.getEntries());
+        assertTrue(after.getKeys() < before.getKeys());
+        assertTrue(after.getValues() < before.getValues());
+        assertTrue(after.getTotal() < before.getTotal());
+
+        // Serialized with its store
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(compact);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            Configuration copy = (Configuration) in.readObject();
+            assertEquals(1500, copy.size());
+            assertEquals("8081", copy.getString("vcap.services.ups-admin.credentials.item5.port"));
+        }
+    }
+
+    @Test
+    public void testForEach() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("app.host", "localhost");
+        for (int i = 0; i < 1000; i++) {
+            properties.setProperty("app.routes.r" + i + ".path", "/api/v" + i);
+            properties.setProperty("app.routes.r" + i + ".url", "http://${app.host}/v" + i);
+        }
+        for (Configuration config : Arrays.asList(new Configuration(properties, null),
+                Configuration.compact(properties, null))) {
+            Map<String, String> entries = new HashMap<>();
+            config.forEach("app.routes", (key, value) -> entries.put(key.toString(), value.toString()));
+            assertEquals(2000, entries.size());
+            assertEquals("/api/v7", entries.get("r7.path"));
+            assertEquals("http://${app.host}/v7", entries.get("r7.url"));
+
+            Configuration.Cursor cursor = config.cursor("app.routes.r9");
+            Set<String> keys = new TreeSet<>();
+            while (cursor.next()) {
+                keys.add(cursor.getKey().toString());
+                if ("url".contentEquals(cursor.getKey())) {
+                    assertEquals("http://${app.host}/v9", cursor.getValue().toString());
+                    assertEquals("http://localhost/v9", cursor.getString());
+                }
+            }
+            assertFalse(cursor.next());
+            assertEquals(new TreeSet<>(Arrays.asList("path", "url")), keys);
+            // Relative to the sub configuration
+            cursor = config.getConfiguration("app").cursor("routes.r9");
+            assertTrue(cursor.next());
+            assertTrue(cursor.getValue().toString().endsWith("v9"));
+
+            AtomicInteger count = new AtomicInteger();
+            config.forEach("", (key, value) -> count.incrementAndGet());
+            assertEquals(2001, count.get());
+            config.forEach("none", (key, value) -> fail("Not found"));
+        }
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("app.host", "localhost");
+        properties.setProperty("app.port", "8080");
+        properties.setProperty("app.url", "http://${app.host}:${app.port}/");
+        properties.setProperty("app.dead", "unused");
+        properties.setProperty("app.web.timeout", "30");
+        Configuration config = new Configuration(properties, null);
+        assertNull(config.getProfiler());
+        AccessProfiler profiler = config.profile();
+        assertTrue(profiler == config.profile());
+        assertTrue(profiler == config.getConfiguration("app").getProfiler());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("http://localhost:8080/", config.getString("app.url"));
+            assertEquals(8080, config.getInt("app.port", 0));
+        }
+        assertEquals(30, (int) config.getConfiguration("app.web").getInteger("timeout"));
+
+        AccessProfiler.Stats url = profiler.getStats("app.url");
+        assertEquals(10, url.getReads());
+        assertEquals(1, url.getMisses());
+        assertEquals(9, url.getHits());
+        assertTrue(url.getResolveNanos() > 0L);
+        AccessProfiler.Stats port = profiler.getStats("app.port");
+        // Once more by the reference of 'app.url'
+        assertEquals(11, port.getReads());
+        assertEquals(9, port.getHits());
+        assertTrue(port.getConvertNanos() > 0L);
+        // Counted by the absolute key
+        assertEquals(1, profiler.getStats("app.web.timeout").getReads());
+        // Read by the reference of 'app.url'
+        assertEquals(1, profiler.getStats("app.host").getReads());
+        assertEquals(new TreeSet<>(Arrays.asList("app.dead")), profiler.unreadKeys());
+        assertEquals("app.port", profiler.hotKeys(1).get(0));
+        assertTrue(profiler.getHitRatio() > 0.8d);
+        String dump = profiler.dump();
+        System.out.print(dump);
+        assertTrue(dump.contains("app.dead"));
+
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(profiler.getObjectName()));
+        assertEquals(profiler.getReads(), server.getAttribute(profiler.getObjectName(), "Reads"));
+        profiler.reset();
+        assertEquals(5, profiler.unreadKeys().size());
+
+        javax.management.ObjectName name = profiler.getObjectName();
+        config.destroy();
+        assertFalse(server.isRegistered(name));
+        assertNull(config.getProfiler());
+
+        // A name per profiler, even for equal configurations
+        Configuration first = new Configuration(properties, null);
+        Configuration second = new Configuration(properties, null);
+        javax.management.ObjectName firstName = first.profile().getObjectName();
+        javax.management.ObjectName secondName = second.profile().getObjectName();
+        assertFalse(firstName.equals(secondName));
+        first.destroy();
+        assertFalse(server.isRegistered(firstName));
+        assertTrue(server.isRegistered(secondName));
+        second.destroy();
+        assertFalse(server.isRegistered(secondName));
+    }
+
+    @Test
+    public void testFindUnreferenced() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("app.host", "localhost");
+        properties.setProperty("app.url", "http://${app.host}/");
+        properties.setProperty("app.dead", "unused");
+        properties.setProperty("used.class", Counted.class.getName());
+        properties.setProperty("used.name", "${app.host}");
+        properties.setProperty("unused.class", Counted.class.getName());
+        properties.setProperty("unused.name", "unused");
+        Configuration config = new Configuration(properties, null);
+        assertEquals(properties.stringPropertyNames(), config.findUnreferenced());
+
+        assertEquals("http://localhost/", config.getString("app.url"));
+        config.getAs("used", Counted.class);
+        Counted.COUNT.set(0);
+        assertEquals(new TreeSet<>(Arrays.asList("app.dead", "unused.class", "unused.name")),
+                config.findUnreferenced());
+        // Nothing instantiated
+        assertEquals(0, Counted.COUNT.get());
+
+        // Read by a sub configuration
+        assertEquals("unused", config.getConfiguration("app").getString("dead"));
+        Properties changed = new Properties();
+        changed.putAll(properties);
+        changed.setProperty("app.added", "new");
+        changed.remove("unused.name");
+        config.reload(changed);
+        assertEquals(new TreeSet<>(Arrays.asList("app.added", "unused.class")), config.findUnreferenced());
+    }
+
     public static abstract class AbstractConfig {
         private String url;
         private Integer cost;
@@ -520,6 +987,68 @@ public class ConfigurationTest {
         }
     }
 
+    public static class Wired {
+        private String name;
+        private Wired left;
+        private Wired right;
+    }
+
+    public static class Concurrent extends Wired {
+        static volatile CyclicBarrier STARTED;
+
+        public Concurrent() throws Exception {
+            STARTED.await(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    public interface Storage {
+        String getName();
+    }
+
+    public static class LazyStore implements Storage {
+        static final AtomicInteger COUNT = new AtomicInteger();
+        private String name;
+
+        public LazyStore() {
+            COUNT.incrementAndGet();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class Client {
+        private Storage store;
+        private Storage backup;
+    }
+
+    public static class Paired {
+        static volatile CountDownLatch CREATED;
+        private Paired ref;
+
+        public Paired() throws InterruptedException {
+            CREATED.countDown();
+            CREATED.await(5L, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class Counted {
+        static final AtomicInteger COUNT = new AtomicInteger();
+        private String name;
+        private Counted ref;
+
+        public Counted() {
+            COUNT.incrementAndGet();
+            try {
+                Thread.sleep(2L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     @Config("") // TODO
     public static class App {
         private String name;
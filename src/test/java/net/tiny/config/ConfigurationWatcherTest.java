@@ -0,0 +1,144 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class ConfigurationWatcherTest {
+
+    static final String LS = System.getProperty("line.separator");
+
+    @Config("app.sample")
+    public static class Sample {
+        private String url;
+        private int cost;
+    }
+
+    public static class Reloadable {
+        private String name;
+        private int binds;
+
+        public void setVersion(int version) {
+            binds++;
+        }
+    }
+
+    static class ReloadMonitor implements ContextHandler.Listener {
+        final BlockingQueue<Set<String>> changes = new LinkedBlockingQueue<>();
+
+        @Override
+        public void created(Object bean, Class<?> beanClass) {
+        }
+        @Override
+        public void parsed(String type, String resource, int size) {
+        }
+        @Override
+        public void cached(String name, Object value, boolean config) {
+        }
+        @Override
+        public void reloaded(String resource, Set<String> changed) {
+            changes.add(changed);
+        }
+    }
+
+    private static String properties(String name, String cost, String port) {
+        return "app.sample.url = http://www.abc.com/" + LS
+            + (null == cost ? "" : "app.sample.cost = " + cost + LS)
+            + (null == port ? "" : "app.sample.port = " + port + LS)
+            + "common.name = " + name + LS
+            + "bean.class = " + Reloadable.class.getName() + LS
+            + "bean.name = ${common.name}" + LS
+            + "bean.version = 1" + LS
+            + "other.class = " + Reloadable.class.getName() + LS
+            + "other.name = other" + LS
+            + "other.version = 1" + LS;
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        File file = File.createTempFile("reload", ".properties");
+        file.deleteOnExit();
+        write(file, properties("first", "1080", null));
+
+        ReloadMonitor monitor = new ReloadMonitor();
+        ConfigurationHandler handler = new ConfigurationHandler();
+        handler.setListener(monitor);
+        handler.setResource(file.getAbsolutePath());
+        handler.parse();
+        Configuration config = handler.getConfiguration();
+        Sample sample = config.getAs(Sample.class);
+        Reloadable bean = config.getAs("bean", Reloadable.class);
+        Reloadable other = config.getAs("other", Reloadable.class);
+        assertEquals(1080, sample.cost);
+        assertEquals("first", bean.name);
+        assertEquals("first", config.getString("bean.name"));
+        assertTrue(handler.reload().isEmpty());
+
+        write(file, properties("second", null, "8080"));
+        Set<String> changed = handler.reload();
+        assertEquals(new TreeSet<>(Arrays.asList("app.sample.cost", "app.sample.port", "common.name")), changed);
+        assertEquals(changed, monitor.changes.poll());
+        assertNull(config.getString("app.sample.cost"));
+        assertEquals(8080, (int) config.getInteger("app.sample.port"));
+        assertEquals("second", config.getString("bean.name"));
+
+        // Bound again in place
+        assertTrue(sample == config.getAs(Sample.class));
+        assertTrue(bean == config.getAs("bean", Reloadable.class));
+        assertEquals("second", bean.name);
+        assertEquals(2, bean.binds);
+        // Not changed
+        assertTrue(other == config.getAs("other", Reloadable.class));
+        assertEquals(1, other.binds);
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        File file = File.createTempFile("watch", ".properties");
+        file.deleteOnExit();
+        write(file, properties("first", "1080", null));
+
+        ReloadMonitor monitor = new ReloadMonitor();
+        ConfigurationHandler handler = new ConfigurationHandler();
+        handler.setListener(monitor);
+        handler.setResource(file.getAbsolutePath());
+        Configuration config = handler.getConfiguration();
+        Reloadable bean = config.getAs("bean", Reloadable.class);
+
+        try (ConfigurationWatcher watcher = handler.watch()) {
+            assertEquals(1, watcher.getFiles().size());
+            Snapshot first = watcher.snapshot();
+            assertEquals("first", first.getString("bean.name"));
+
+            write(file, properties("second", "1080", null));
+            Set<String> changed = monitor.changes.poll(10L, TimeUnit.SECONDS);
+            assertEquals(new TreeSet<>(Arrays.asList("common.name")), changed);
+            assertEquals("second", bean.name);
+            // Published after the reload
+            long limit = System.currentTimeMillis() + 5000L;
+            while (watcher.snapshot() == first && System.currentTimeMillis() < limit) {
+                Thread.sleep(10L);
+            }
+            assertEquals("second", watcher.snapshot().getString("bean.name"));
+            assertEquals("first", first.getString("bean.name"));
+        }
+        assertFalse(monitor.changes.poll(100L, TimeUnit.MILLISECONDS) != null);
+    }
+}
@@ -0,0 +1,116 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+public class HoconLexerTest {
+
+    static final String LS = System.getProperty("line.separator");
+
+    private static List<String> tokens(String text, int size) throws Exception {
+        HoconLexer lexer = new HoconLexer(new StringReader(text), size);
+        List<String> tokens = new ArrayList<>();
+        int token;
+        while ((token = lexer.next()) != HoconLexer.EOF) {
+            switch (token) {
+            case HoconLexer.EOL:
+                tokens.add("EOL");
+                break;
+            case HoconLexer.WORD:
+                tokens.add("W:" + new String(lexer.chars(), lexer.start(), lexer.length()));
+                break;
+            case '\'':
+            case '"':
+                tokens.add("Q:" + new String(lexer.chars(), lexer.start(), lexer.length()));
+                break;
+            default:
+                tokens.add(String.valueOf((char) token));
+                break;
+            }
+        }
+        return tokens;
+    }
+
+    @Test
+    public void testTokens() throws Exception {
+        assertEquals("[W:a, ., W:b, =, W:Prepare, W:Customer, EOL]",
+                tokens("a.b = Prepare Customer\n", 8192).toString());
+        assertEquals("[W:url, =, Q:http://www.abc.com/, W:http, :, EOL, EOL]",
+                tokens("url = \"http://www.abc.com/\" http://abc // comment\r\n\n", 8192).toString());
+        assertEquals("[W:v, =, $, {, W:a, ., W:b, }, -, W:x, EOL]",
+                tokens("v = ${a.b}-x\r", 8192).toString());
+        // Escapes and a quote ended by the line end
+        assertEquals("[Q:a\tb\nA, Q:open, EOL, W:日本語, #]",
+                tokens("'a\\tb\\n\\101' \"open\n日本語#", 8192).toString());
+    }
+
+    @Test
+    public void testBufferBoundary() throws Exception {
+        StringBuilder text = new StringBuilder();
+        try (InputStream in = Thread.currentThread().getContextClassLoader()
+                .getResourceAsStream("config/includes.conf")) {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                text.append(new String(buffer, 0, len, StandardCharsets.UTF_8));
+            }
+        }
+        text.append("long = \"").append(new String(new char[100]).replace('\0', 'x')).append("\"").append(LS);
+        text.append("word = ").append(new String(new char[100]).replace('\0', 'y')).append(LS);
+        List<String> expected = tokens(text.toString(), 8192);
+        for (int size = 1; size < 10; size++) {
+            assertEquals(expected, tokens(text.toString(), size));
+        }
+    }
+
+    @Test
+    public void testStreamTokenizerTokens() throws Exception {
+        final int items = 50;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < items; i++) {
+            text.append("web.ui {").append(LS)
+                .append("  indicator").append(i).append(" {").append(LS)
+                .append("    index = ").append(i).append(LS)
+                .append("    name = \"Item ").append(i).append("\"").append(LS)
+                .append("    url = ${web.base}/indicator").append(i).append(".xhtml").append(LS)
+                .append("    enabled = true // flag").append(LS)
+                .append("  }").append(LS)
+                .append("}").append(LS);
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        // The same tokens as the former StreamTokenizer
+        StreamTokenizer tokenizer = ConfigurationHandler.createStreamTokenizer(
+                new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+        int count = 0;
+        while (tokenizer.nextToken() != StreamTokenizer.TT_EOF) {
+            count++;
+        }
+        HoconLexer lexer = new HoconLexer(
+                new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+        int tokens = 0;
+        while (lexer.next() != HoconLexer.EOF) {
+            tokens++;
+        }
+        assertTrue(tokens > 0);
+        assertEquals(count, tokens);
+
+        ConfigurationHandler handler = new ConfigurationHandler();
+        Properties properties = handler.load(new ByteArrayInputStream(bytes), ContextHandler.Type.HOCON);
+        assertEquals(items * 4, properties.size());
+        assertEquals("Item 7", properties.getProperty("web.ui.indicator7.name"));
+        assertEquals("${web.base}/indicator7.xhtml", properties.getProperty("web.ui.indicator7.url"));
+    }
+}
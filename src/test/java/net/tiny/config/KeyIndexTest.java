@@ -0,0 +1,78 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class KeyIndexTest {
+
+    @Test
+    public void testPrefix() throws Exception {
+        KeyIndex index = new KeyIndex(Arrays.asList(
+                "app.sample.url",
+                "app.sample.cost",
+                "app.sample.nested.name",
+                "app.sample.nested.threshold",
+                "app.samples",
+                "web.ui.indicator.item1.name"));
+        assertEquals(6, index.size());
+        assertTrue(index.contains("app.sample.url"));
+        assertFalse(index.contains("app.sample"));
+        assertTrue(index.hasPrefix("app."));
+        assertTrue(index.hasPrefix("app.sample.nested."));
+        assertFalse(index.hasPrefix("app.sample.url."));
+        assertFalse(index.hasPrefix("app.samp."));
+
+        Set<String> names = index.stream("app.sample.").collect(Collectors.toCollection(TreeSet::new));
+        assertEquals("[app.sample.cost, app.sample.nested.name, app.sample.nested.threshold, app.sample.url]",
+                names.toString());
+        assertEquals(2L, index.stream("app.sample.nested.").count());
+        assertEquals(0L, index.stream("none.").count());
+
+        index.remove("app.sample.nested.name");
+        index.remove("app.sample.nested.threshold");
+        assertFalse(index.hasPrefix("app.sample.nested."));
+        assertEquals(4, index.size());
+
+        index.add("app.sample.");
+        assertTrue(index.hasPrefix("app.sample."));
+        assertTrue(index.contains("app.sample."));
+        index.clear();
+        assertEquals(0, index.size());
+        assertFalse(index.hasPrefix("app."));
+    }
+
+    @Test
+    public void testEmptySegment() throws Exception {
+        KeyIndex index = new KeyIndex(Arrays.asList("a..b", ".x", "a.b"));
+        assertTrue(index.hasPrefix("."));
+        assertEquals(".x", index.stream(".").findFirst().get());
+        assertTrue(index.hasPrefix("a.."));
+        assertEquals(2L, index.stream("a.").count());
+    }
+
+    @Test
+    public void testPrefixScan() throws Exception {
+        Properties properties = new Properties();
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 20; j++) {
+                properties.setProperty(String.format("app.module%d.bean%d.value", i, j), String.valueOf(j));
+            }
+        }
+        KeyIndex index = new KeyIndex(properties.stringPropertyNames());
+        for (int i = 0; i < 20; i++) {
+            String prefix = "app.module" + i + ".bean1.";
+            Set<String> scanned = properties.stringPropertyNames().stream()
+                    .filter(k -> k.startsWith(prefix)).collect(Collectors.toCollection(TreeSet::new));
+            assertEquals(scanned, index.stream(prefix).collect(Collectors.toCollection(TreeSet::new)));
+        }
+    }
+}
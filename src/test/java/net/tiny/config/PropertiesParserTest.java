@@ -0,0 +1,128 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class PropertiesParserTest {
+
+    static final String LS = System.getProperty("line.separator");
+
+    private static Properties parse(String text, int size) throws Exception {
+        final Properties prop = new Properties();
+        new PropertiesParser(new StringReader(text),
+                (k, v) -> prop.setProperty(k.toString(), v.toString()), size).parse();
+        return prop;
+    }
+
+    private static Properties load(String text) throws Exception {
+        final Properties prop = new Properties();
+        prop.load(new StringReader(text));
+        return prop;
+    }
+
+    @Test
+    public void testEscapes() throws Exception {
+        String text = "# comment \\\n"
+                + "! comment" + LS
+                + "   " + LS
+                + "a=1" + LS
+                + "  b : 2  " + LS
+                + "c 3" + LS
+                + "d\t=\t=4" + LS
+                + "e" + LS
+                + "=empty" + LS
+                + "f\\=g\\:h\\ i = 5" + LS
+                + "j = \\u65e5\\u672c\\t\\n\\r\\f\\x\\\\" + LS
+                + "k = first \\" + LS
+                + "      second \\\r\n"
+                + "\t# not a comment" + LS
+                + "l = \\\\" + LS
+                + "m = a\\" + LS
+                + LS
+                + "n = \\\r"
+                + "\f  next\r"
+                + "a = override" + LS
+                + "o = end \\";
+        Properties expected = load(text);
+        assertEquals("5", expected.getProperty("f=g:h i"));
+        assertEquals("first second # not a comment", expected.getProperty("k"));
+        for (int size = 1; size <= 16; size++) {
+            assertEquals(expected, parse(text, size), "size " + size);
+        }
+        assertEquals(expected, parse(text, 8192));
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        final char[] alphabet = { 'a', 'b', '=', ':', ' ', '\t', '\f', '\\', '\\', '\n', '\r', '#', '!', 'u', '0', 'F' };
+        final Random random = new Random(2020L);
+        for (int n = 0; n < 5000; n++) {
+            final StringBuilder text = new StringBuilder();
+            final int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                text.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            Properties expected;
+            try {
+                expected = load(text.toString());
+            } catch (IllegalArgumentException ex) {
+                expected = null;
+            }
+            for (int size : new int[] { 1, 3, 8192 }) {
+                if (null == expected) {
+                    assertThrows(IllegalArgumentException.class, () -> parse(text.toString(), size));
+                } else {
+                    assertEquals(expected, parse(text.toString(), size), text.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> parse("a = \\u12G4", 8192));
+        assertThrows(IllegalArgumentException.class, () -> parse("a = \\u12", 8192));
+    }
+
+    @Test
+    public void testHandlerLoad() throws Exception {
+        final int entries = 40;
+        StringBuilder text = new StringBuilder();
+        text.append("# Messages").append(LS);
+        for (int i = 0; i < entries; i++) {
+            switch (i % 4) {
+            case 0:
+                text.append("message.").append(i).append(".title = Title of the item ").append(i).append(LS);
+                break;
+            case 1:
+                text.append("route.").append(i).append(".path=/api/v1/items/{id}/").append(i).append(LS);
+                break;
+            case 2:
+                text.append("message.").append(i).append(".ja = \\u9805\\u76ee ").append(i).append(LS);
+                break;
+            default:
+                text.append("message.").append(i).append(".long = first line \\").append(LS)
+                    .append("    second line ").append(i).append(LS);
+                break;
+            }
+        }
+        Properties expected = load(text.toString());
+        assertEquals(entries, expected.size());
+
+        ConfigurationHandler handler = new ConfigurationHandler();
+        Properties prop = handler.load(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)),
+                ContextHandler.Type.PROPERTIES);
+        assertEquals(expected, prop);
+        assertTrue(prop.getProperty("message.2.ja").startsWith("項目"));
+        assertEquals("first line second line 3", prop.getProperty("message.3.long"));
+    }
+}
@@ -0,0 +1,176 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class SnapshotFileTest {
+
+    static final String LS = System.getProperty("line.separator");
+
+    static class ParseMonitor implements ContextHandler.Listener {
+        final List<String> types = new ArrayList<>();
+
+        @Override
+        public void created(Object bean, Class<?> beanClass) {
+        }
+        @Override
+        public void parsed(String type, String resource, int size) {
+            types.add(type);
+        }
+        @Override
+        public void cached(String name, Object value, boolean config) {
+        }
+    }
+
+    @Test
+    public void testWriteAndOpen() throws Exception {
+        File source = File.createTempFile("source", ".properties");
+        source.deleteOnExit();
+        Files.write(source.toPath(), "a = 1".getBytes(StandardCharsets.UTF_8));
+        Path file = Files.createTempFile("config", ".snapshot");
+        file.toFile().deleteOnExit();
+
+        URL url = source.toURI().toURL();
+        Properties properties = new Properties();
+        for (int i = 0; i < 100; i++) {
+            properties.setProperty("app.item" + i + ".name", "name-" + (i % 10));
+        }
+        properties.setProperty("app.title", "日本語 ${app.item1.name}");
+        SnapshotFile.write(file, Collections.singletonList(url),
+                Collections.singletonMap(url, SnapshotFile.digest(url)), properties);
+
+        SnapshotFile snapshot = SnapshotFile.open(file);
+        assertEquals(101, snapshot.size());
+        assertEquals(Collections.singletonList(url.toString()), snapshot.getChain().stream()
+                .map(URL::toString).collect(Collectors.toList()));
+        assertEquals(source.toURI().toURL().toString(), snapshot.getSources().get(0).toString());
+        assertTrue(snapshot.isValid());
+        assertEquals("name-7", snapshot.get("app.item17.name"));
+        // Not resolved, the references are resolved by the configuration
+        assertEquals("日本語 ${app.item1.name}", snapshot.get("app.title"));
+        assertNull(snapshot.get("app.item17"));
+        assertEquals(properties, snapshot.load());
+
+        Files.write(source.toPath(), "a = 2".getBytes(StandardCharsets.UTF_8));
+        assertFalse(snapshot.isValid());
+        source.delete();
+        assertFalse(snapshot.isValid());
+
+        snapshot.close();
+        assertThrows(IllegalStateException.class, () -> snapshot.get("app.title"));
+        snapshot.close();
+    }
+
+    @Test
+    public void testChangedWhileParsing() throws Exception {
+        File source = File.createTempFile("source", ".properties");
+        source.deleteOnExit();
+        Files.write(source.toPath(), "a = 1".getBytes(StandardCharsets.UTF_8));
+        Path file = Files.createTempFile("config", ".snapshot");
+        file.toFile().deleteOnExit();
+
+        // Taken before the source is read, the values are of the changed source
+        URL url = source.toURI().toURL();
+        byte[] digest = SnapshotFile.digest(url);
+        Files.write(source.toPath(), "a = 2".getBytes(StandardCharsets.UTF_8));
+        Properties properties = new Properties();
+        properties.setProperty("a", "2");
+        SnapshotFile.write(file, Collections.singletonList(url), Collections.singletonMap(url, digest), properties);
+        try (SnapshotFile snapshot = SnapshotFile.open(file)) {
+            assertFalse(snapshot.isValid());
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SnapshotFile.write(file, Collections.singletonList(url),
+                        Collections.singletonMap(url, new byte[4]), properties));
+    }
+
+    @Test
+    public void testOtherChain() throws Exception {
+        File source = File.createTempFile("source", ".properties");
+        source.deleteOnExit();
+        Files.write(source.toPath(), ("app.name = source" + LS).getBytes(StandardCharsets.UTF_8));
+        File other = File.createTempFile("other", ".properties");
+        other.deleteOnExit();
+        Files.write(other.toPath(), ("app.name = other" + LS).getBytes(StandardCharsets.UTF_8));
+        Path directory = Files.createTempDirectory("snapshots");
+        directory.toFile().deleteOnExit();
+
+        // A valid snapshot of another chain holding the resource, under its name
+        URL url = source.toURI().toURL();
+        URL otherUrl = other.toURI().toURL();
+        Path file = directory.resolve(
+                ParseCache.digest((url.toString() + "\n").getBytes(StandardCharsets.UTF_8)) + ".snapshot");
+        file.toFile().deleteOnExit();
+        Map<URL, byte[]> digests = new LinkedHashMap<>();
+        digests.put(url, SnapshotFile.digest(url));
+        digests.put(otherUrl, SnapshotFile.digest(otherUrl));
+        Properties properties = new Properties();
+        properties.setProperty("app.name", "other");
+        SnapshotFile.write(file, Arrays.asList(url, otherUrl), digests, properties);
+        try (SnapshotFile snapshot = SnapshotFile.open(file)) {
+            assertTrue(snapshot.isValid());
+        }
+
+        ParseMonitor monitor = new ParseMonitor();
+        ConfigurationHandler handler = new ConfigurationHandler();
+        handler.setListener(monitor);
+        handler.setCacheDirectory(directory.toFile());
+        handler.setResource(source.getAbsolutePath());
+        handler.parse();
+        assertEquals("source", handler.getConfiguration().getString("app.name"));
+        assertEquals("[PROPERTIES]", monitor.types.toString());
+    }
+
+    @Test
+    public void testHandlerSnapshot() throws Exception {
+        File source = File.createTempFile("snapshot", ".properties");
+        source.deleteOnExit();
+        Files.write(source.toPath(), ("app.name = first" + LS + "app.url = http://${app.name}/" + LS)
+                .getBytes(StandardCharsets.UTF_8));
+        Path directory = Files.createTempDirectory("snapshots");
+        directory.toFile().deleteOnExit();
+
+        ParseMonitor monitor = new ParseMonitor();
+        ConfigurationHandler handler = new ConfigurationHandler();
+        handler.setListener(monitor);
+        handler.setCacheDirectory(directory.toFile());
+        handler.setResource(source.getAbsolutePath());
+        handler.parse();
+        assertEquals("http://first/", handler.getConfiguration().getString("app.url"));
+
+        // Loaded without parsing
+        handler.parse();
+        assertEquals("http://first/", handler.getConfiguration().getString("app.url"));
+        assertEquals(1, handler.getSources().size());
+
+        Files.write(source.toPath(), "app.name = second".getBytes(StandardCharsets.UTF_8));
+        handler.parse();
+        assertNull(handler.getConfiguration().getString("app.url"));
+        assertEquals("second", handler.getConfiguration().getString("app.name"));
+        assertEquals("[PROPERTIES, SNAPSHOT, PROPERTIES]", monitor.types.toString());
+
+        for (File file : directory.toFile().listFiles()) {
+            file.deleteOnExit();
+        }
+    }
+}
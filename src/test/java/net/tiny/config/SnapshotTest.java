@@ -0,0 +1,88 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+public class SnapshotTest {
+
+    @Test
+    public void testFreeze() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("app.sample.url", "http://www.abc.com/");
+        properties.setProperty("app.sample.cost", "1080");
+        properties.setProperty("app.sample.site", "${app.sample.url}");
+        properties.setProperty("app.sample.value", "${app.sample.cost}");
+        properties.setProperty("app.sample.enable", "yes");
+        Configuration config = new Configuration(properties, null);
+
+        Snapshot snapshot = config.freeze();
+        assertEquals(5, snapshot.size());
+        assertEquals(5, snapshot.getAllPropertyNames().size());
+        assertTrue(snapshot.contains("app.sample.site"));
+        assertFalse(snapshot.contains("app.sample"));
+        assertEquals("http://www.abc.com/", snapshot.getString("app.sample.site"));
+        assertEquals(1080, (int) snapshot.getInteger("app.sample.value"));
+        assertEquals(1080L, (long) snapshot.getLong("app.sample.cost"));
+        assertTrue(snapshot.getBoolean("app.sample.enable"));
+        assertNull(snapshot.getString("app.sample.none"));
+        assertNull(snapshot.getInteger("app.sample.none"));
+
+        // Immutable
+        properties.setProperty("app.sample.cost", "2000");
+        assertEquals("1080", snapshot.getString("app.sample.cost"));
+    }
+
+    @Test
+    public void testConcurrentRead() throws Exception {
+        Properties properties = new Properties();
+        final int size = 100;
+        for (int i = 0; i < size; i++) {
+            properties.setProperty("app.key" + i, String.valueOf(i));
+        }
+        Configuration config = new Configuration(properties, null);
+        Snapshot snapshot = config.freeze();
+        final String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "app.key" + i;
+        }
+        read(4, 10, keys, config::getString);
+        read(4, 10, keys, snapshot::getString);
+    }
+
+    private void read(int threads, int loop, String[] keys, Function<String, String> getter) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int n = 0; n < loop; n++) {
+                        for (String key : keys) {
+                            if (getter.apply(key) != null) {
+                                count++;
+                            }
+                        }
+                    }
+                    return count;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(loop * keys.length, (int) future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
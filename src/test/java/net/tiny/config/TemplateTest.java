@@ -0,0 +1,91 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class TemplateTest {
+
+    @Test
+    public void testEvaluate() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("x.y", "XYZ");
+        properties.setProperty("a.b", "d");
+        properties.setProperty("d.c", "${x.y}");
+        Template.Resolver resolver = properties::getProperty;
+
+        assertEquals("d is XYZ", Template.compile("${a.b} is ${d.c}").evaluate(resolver));
+        assertEquals("XYZ", Template.compile("${${a.b}.c}").evaluate(resolver));
+        assertEquals("d.c", Template.compile("${${a.b}.c}").name(resolver));
+        assertEquals("a.b", Template.compile("${a.b}").name(resolver));
+        assertEquals("d.XYZ", Template.compile("${a.b}.${d.c}").name(resolver));
+        assertNull(Template.compile("${a.b} and ${none}").evaluate(resolver));
+
+        // Not closed or no variables
+        assertEquals("${a.b", Template.compile("${a.b").evaluate(resolver));
+        assertEquals("d and ${x.y", Template.compile("${a.b} and ${x.y").evaluate(resolver));
+        assertEquals("{a.b} $ }", Template.compile("{a.b} $ }").evaluate(resolver));
+        assertFalse(Template.compile("{a.b} $ }").hasReferences());
+        assertTrue(Template.compile("${${a.b}.c}").isReference());
+        assertFalse(Template.compile("x${a.b}").isReference());
+    }
+
+    @Test
+    public void testReferences() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("paas.vcap.alias", "vcap.services");
+        Set<String> names = Template.compile("${${paas.vcap.alias}.enable}, ${other}")
+                .references(properties::getProperty);
+        assertEquals("[paas.vcap.alias, vcap.services.enable, other]", names.toString());
+    }
+
+    @Test
+    public void testEvaluateCycle() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("a", "${b}");
+        properties.setProperty("b", "x${c}");
+        properties.setProperty("c", "${a}");
+        try {
+            Template.compile("${a}").evaluate(properties::getProperty);
+            fail();
+        } catch (RuntimeException ex) {
+            assertEquals("Can not cycle reference '${b}'.", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testFindCycle() throws Exception {
+        Map<String, List<String>> graph = new LinkedHashMap<>();
+        graph.put("a", Arrays.asList("b", "x"));
+        graph.put("b", Arrays.asList("c"));
+        graph.put("c", Arrays.asList("d", "b"));
+        assertEquals("[b, c, b]", Template.findCycle(graph).toString());
+
+        graph.put("c", Arrays.asList("d"));
+        assertTrue(Template.findCycle(graph).isEmpty());
+
+        graph.put("x", Arrays.asList("x"));
+        assertEquals("[x, x]", Template.findCycle(graph).toString());
+
+        // Deep chain without stack overflow
+        Map<String, List<String>> chain = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            chain.put("k" + i, Arrays.asList("k" + (i + 1)));
+        }
+        assertTrue(Template.findCycle(chain).isEmpty());
+        chain.put("k100000", Arrays.asList("k0"));
+        assertEquals(100002, Template.findCycle(chain).size());
+    }
+}
@@ -0,0 +1,62 @@
+package net.tiny.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+public class ValueCacheTest {
+
+    @Test
+    public void testInvalidate() throws Exception {
+        ValueCache cache = new ValueCache();
+        cache.put("a", "XYZ", Arrays.asList("b", "c"), cache.stamp());
+        cache.put("d", "d is XYZ", Arrays.asList("a", "b", "c"), cache.stamp());
+        cache.put("e", "E", Collections.emptyList(), cache.stamp());
+        assertEquals(3, cache.size());
+        assertEquals("XYZ", cache.get("a"));
+
+        cache.invalidate("c");
+        assertNull(cache.get("a"));
+        assertNull(cache.get("d"));
+        assertEquals("E", cache.get("e"));
+
+        cache.invalidate("e");
+        assertNull(cache.get("e"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPrimitive() throws Exception {
+        ValueCache cache = new ValueCache();
+        cache.put("pool.max", "5", Arrays.asList("pool.size"), cache.stamp());
+        cache.putPrimitive("pool.max", int.class, 5L, cache.stamp());
+        assertEquals(5L, cache.getPrimitive("pool.max", int.class).bits);
+        assertNull(cache.getPrimitive("pool.max", long.class));
+
+        cache.invalidate("pool.size");
+        assertNull(cache.getPrimitive("pool.max", int.class));
+
+        long stamp = cache.stamp();
+        cache.invalidate("pool.max");
+        cache.putPrimitive("pool.max", int.class, 5L, stamp);
+        assertNull(cache.getPrimitive("pool.max", int.class));
+    }
+
+    @Test
+    public void testStaleStamp() throws Exception {
+        ValueCache cache = new ValueCache();
+        long stamp = cache.stamp();
+        // Changed while resolving
+        cache.invalidate("b");
+        cache.put("a", "old", Arrays.asList("b"), stamp);
+        assertNull(cache.get("a"));
+
+        cache.put("a", null, Arrays.asList("b"), cache.stamp());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+}